@@ -0,0 +1,93 @@
+package com.evolutionnext.scopedvalues;
+
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The fork loop of {@link MillionsOfTasks#submit()}, every subtask logging one line, with the
+ * line written through a {@code System.out} style autoflushing {@link PrintStream} versus
+ * the {@link AsyncLogSink}. Both write to a temporary file so the terminal is not measured.
+ */
+@SuppressWarnings("preview")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class MillionsOfTasksLoggingBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int tasks;
+
+    private Path file;
+    private PrintStream printStream;
+    private AsyncLogSink sink;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("millions-of-tasks", ".log");
+        printStream = new PrintStream(new FileOutputStream(file.toFile()), true);
+        sink = AsyncLogSink.open(file);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        printStream.close();
+        sink.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void printStream() throws InterruptedException {
+        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll())) {
+            for (int i = 0; i < tasks; i++) {
+                scope.fork(() -> printStream.printf("Freddy Rules - %d on Thread[%s]%n",
+                    counter.incrementAndGet(), Thread.currentThread()));
+            }
+            scope.join();
+        }
+    }
+
+    /**
+     * Includes the time for the writer to drain, so both variants have the same lines on disk
+     * when the measurement ends: {@link AsyncLogSink#writtenCount()} only counts records the
+     * writer has flushed to the channel.
+     */
+    @Benchmark
+    public void asyncLogSink() throws InterruptedException {
+        long target = sink.writtenCount() + tasks;
+        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll())) {
+            for (int i = 0; i < tasks; i++) {
+                scope.fork(() -> sink.printf("Freddy Rules - %d on Thread[%s]%n",
+                    counter.incrementAndGet(), Thread.currentThread()));
+            }
+            scope.join();
+        }
+        while (sink.writtenCount() < target) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.evolutionnext.scopedvalues;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What it costs to carry a {@link RequestContext}.
+ * <ul>
+ *     <li>{@code lookup*}: reading the context from under {@code depth} unrelated bindings,
+ *     against a {@code ThreadLocal} and the {@link ScopedThreadLocal} facade.</li>
+ *     <li>{@code fork*}: forking {@code forks} subtasks that each read the context, carried
+ *     by a {@code ScopedValue} against three {@code InheritableThreadLocal}s, one per field
+ *     as such code usually has them. Run with {@code -prof gc}, every inheriting virtual
+ *     thread copies the parent's map.</li>
+ * </ul>
+ */
+@SuppressWarnings("preview")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class RequestContextBenchmark {
+    private static final int LOOKUPS = 1024;
+    private static final ScopedValue<Integer> OTHER = ScopedValue.newInstance();
+    private static final ThreadLocal<RequestContext> THREAD_LOCAL = new ThreadLocal<>();
+    private static final InheritableThreadLocal<String> TENANT = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<String> TRACE_ID = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<String> PRINCIPAL = new InheritableThreadLocal<>();
+
+    @State(Scope.Benchmark)
+    public static class Depth {
+        @Param({"1", "8", "32"})
+        public int depth;
+    }
+
+    @Param({"1000"})
+    public int forks;
+
+    private RequestContext context;
+
+    @Setup
+    public void setUp() {
+        context = RequestContext.newTrace("acme", "simon");
+    }
+
+    private void nested(int remaining, Runnable op) {
+        if (remaining == 0) {
+            op.run();
+        } else {
+            ScopedValue.where(OTHER, remaining).run(() -> nested(remaining - 1, op));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void lookupScopedValue(Depth depth, Blackhole blackhole) {
+        context.run(() -> nested(depth.depth, () -> {
+            for (int i = 0; i < LOOKUPS; i++) {
+                blackhole.consume(RequestContext.current());
+            }
+        }));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void lookupScopedThreadLocal(Depth depth, Blackhole blackhole) {
+        context.run(() -> nested(depth.depth, () -> {
+            for (int i = 0; i < LOOKUPS; i++) {
+                blackhole.consume(RequestContext.THREAD_LOCAL.get());
+            }
+        }));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void lookupThreadLocal(Depth depth, Blackhole blackhole) {
+        THREAD_LOCAL.set(context);
+        try {
+            nested(depth.depth, () -> {
+                for (int i = 0; i < LOOKUPS; i++) {
+                    blackhole.consume(THREAD_LOCAL.get());
+                }
+            });
+        } finally {
+            THREAD_LOCAL.remove();
+        }
+    }
+
+    @Benchmark
+    public void forkScopedValue(Blackhole blackhole) throws InterruptedException {
+        context.call(() -> {
+            try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll())) {
+                for (int i = 0; i < forks; i++) {
+                    scope.fork(() -> blackhole.consume(RequestContext.current().tenant()));
+                }
+                return scope.join();
+            }
+        });
+    }
+
+    @Benchmark
+    public void forkInheritableThreadLocal(Blackhole blackhole) throws InterruptedException {
+        TENANT.set(context.tenant());
+        TRACE_ID.set(context.traceId());
+        PRINCIPAL.set(context.principal());
+        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll())) {
+            for (int i = 0; i < forks; i++) {
+                scope.fork(() -> blackhole.consume(TENANT.get()));
+            }
+            scope.join();
+        } finally {
+            TENANT.remove();
+            TRACE_ID.remove();
+            PRINCIPAL.remove();
+        }
+    }
+}
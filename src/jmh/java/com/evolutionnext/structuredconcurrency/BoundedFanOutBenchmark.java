@@ -0,0 +1,102 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * Compares {@link AccountingService#findAllUsers(long...)}, which forks every id at once and
+ * holds every subtask until join, against {@link AccountingService#streamAllUsers}, which caps
+ * the in-flight forks and streams the results.
+ * <p>
+ * The peak heap used during each iteration is printed after the iteration. Add {@code -prof gc}
+ * for allocation rates.
+ */
+@SuppressWarnings("preview")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx4g"})
+public class BoundedFanOutBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int ids;
+
+    @Param({"64", "1024"})
+    public int maxInFlight;
+
+    private long[] userIds;
+    private AccountingService accountingService;
+    private List<MemoryPoolMXBean> heapPools;
+
+    /**
+     * A user service that answers after a short sleep, without printing.
+     */
+    static class QuietUserService extends UserService {
+        private static final User USER = new User("Simon", "Roberts");
+
+        @Override
+        public User findUser(Long id) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return USER;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userIds = LongStream.rangeClosed(1, ids).toArray();
+        accountingService = new AccountingService(new QuietUserService(), new InvoiceService());
+        heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeak() {
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportPeak() {
+        long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        System.out.printf("%n[peak heap] ids=%d maxInFlight=%d: %d MiB%n", ids, maxInFlight, peak >> 20);
+    }
+
+    @Benchmark
+    public List<User> forkEverything() throws ExecutionException, InterruptedException {
+        return accountingService.findAllUsers(userIds);
+    }
+
+    @Benchmark
+    public long boundedStreaming() throws InterruptedException {
+        LongAdder received = new LongAdder();
+        accountingService.streamAllUsers(_ -> received.increment(), maxInFlight, userIds);
+        return received.sum();
+    }
+}
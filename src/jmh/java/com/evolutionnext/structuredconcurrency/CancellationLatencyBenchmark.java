@@ -0,0 +1,138 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * How long CPU-bound losers keep running after their scope is cancelled, and how much CPU
+ * they burn meanwhile. Each invocation forks {@code losers} subtasks that each spin through
+ * {@code work} iterations, then a winner that returns as soon as they are all running, which
+ * makes {@code anySuccessfulResultOrThrow} cancel the scope. The losers poll for cancellation
+ * every {@code pollEvery} iterations:
+ * <ul>
+ *     <li>{@code NONE} never polls, the losers run to the end of their work</li>
+ *     <li>{@code INTERRUPT} polls the thread's interrupt status</li>
+ *     <li>{@code TOKEN} polls {@link CancellationToken#current()}</li>
+ * </ul>
+ * The score is the time per cancelled fan-out, which {@code close} stretches until the last
+ * loser stops. At the end of each trial the time from cancellation to the last loser
+ * stopping and the process CPU used in that window are printed as percentiles.
+ * <p>
+ * Virtual threads are not preempted, so the carriers are raised above {@code losers} to
+ * let the winner run at all.
+ */
+@SuppressWarnings("preview")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Djdk.virtualThreadScheduler.parallelism=8"})
+public class CancellationLatencyBenchmark {
+    private static final com.sun.management.OperatingSystemMXBean OS =
+        (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    public enum Poll {NONE, INTERRUPT, TOKEN}
+
+    @Param({"NONE", "INTERRUPT", "TOKEN"})
+    public Poll poll;
+
+    @Param({"1", "4"})
+    public int losers;
+
+    @Param({"1", "4096"})
+    public int pollEvery;
+
+    @Param({"20000000"})
+    public long work;
+
+    private long pollMask;
+    private LatencyHistogram stopLatency;
+    private LatencyHistogram wastedCpu;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (Integer.bitCount(pollEvery) != 1) throw new IllegalArgumentException("pollEvery must be a power of two");
+        pollMask = pollEvery - 1;
+        stopLatency = new LatencyHistogram();
+        wastedCpu = new LatencyHistogram();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nstop latency %s%nwasted cpu   %s%n", summary(stopLatency), summary(wastedCpu));
+    }
+
+    @Benchmark
+    public String cancelLosers() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(losers);
+        LongAccumulator lastStop = new LongAccumulator(Math::max, Long.MIN_VALUE);
+        long[] cancelled = new long[2];
+        var joiner = CancellableJoiner.wrap(StructuredTaskScope.Joiner.<String>anySuccessfulResultOrThrow());
+        String winner;
+        try (var scope = StructuredTaskScope.open(joiner)) {
+            for (int i = 0; i < losers; i++) {
+                long seed = i;
+                joiner.fork(scope, () -> spin(seed, started, lastStop));
+            }
+            joiner.fork(scope, () -> {
+                started.await();
+                cancelled[0] = System.nanoTime();
+                cancelled[1] = OS.getProcessCpuTime();
+                return "winner";
+            });
+            winner = joiner.join(scope);
+        }
+        stopLatency.recordNanos(lastStop.get() - cancelled[0]);
+        wastedCpu.recordNanos(OS.getProcessCpuTime() - cancelled[1]);
+        return winner;
+    }
+
+    private String spin(long seed, CountDownLatch started, LongAccumulator lastStop) {
+        started.countDown();
+        CancellationToken token = CancellationToken.current();
+        long x = seed;
+        for (long i = 1; i <= work; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+            if ((i & pollMask) == 0 && isCancelled(token)) break;
+        }
+        lastStop.accumulate(System.nanoTime());
+        return Long.toString(x);
+    }
+
+    private boolean isCancelled(CancellationToken token) {
+        return switch (poll) {
+            case NONE -> false;
+            case INTERRUPT -> Thread.currentThread().isInterrupted();
+            case TOKEN -> token.isCancelled();
+        };
+    }
+
+    private static String summary(LatencyHistogram histogram) {
+        LatencyHistogram.Summary summary = histogram.summary();
+        return String.format("p50 %s  p99 %s  max %s  (n=%d)",
+            micros(summary.p50()), micros(summary.p99()), micros(summary.max()), summary.count());
+    }
+
+    private static String micros(Duration duration) {
+        return String.format("%.1fus", duration.toNanos() / 1_000.0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a {@code UserInvoices} response with Jackson on every request against assembling
+ * it from the bytes kept by {@link EncodedResponseCache}. Add {@code -prof gc} to see the
+ * allocation the cache takes off the read path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+public class EncodedResponseBenchmark {
+
+    @Param({"3", "100"})
+    public int invoices;
+
+    private UserInvoices userInvoices;
+    private EncodedResponseCache cache;
+    private OutputStream sink;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) throws InterruptedException {
+        List<Invoice> invoiceList = new ArrayList<>();
+        for (int i = 0; i < invoices; i++) {
+            invoiceList.add(new Invoice(String.valueOf(1000 + i), 100.0F + i));
+        }
+        userInvoices = new UserInvoices(new User("Simon", "Roberts"), List.copyOf(invoiceList));
+        cache = new EncodedResponseCache(new UserService(), new InvoiceService() {
+            @Override
+            public List<Invoice> findAllInvoicesByUser(Long id) {
+                return userInvoices.invoices();
+            }
+        });
+        cache.userInvoices(1L);
+        sink = new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(b);
+            }
+        };
+    }
+
+    @Benchmark
+    public void jackson() throws IOException {
+        try (var json = AccountingJson.JSON.createGenerator(sink)) {
+            AccountingJson.writeUserInvoices(json, userInvoices);
+        }
+    }
+
+    @Benchmark
+    public void cached() throws IOException, InterruptedException {
+        cache.userInvoices(1L).writeTo(sink);
+    }
+}
@@ -0,0 +1,160 @@
+package com.evolutionnext.structuredconcurrency;
+
+import io.reactivex.rxjava3.core.Flowable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the fan-out shape of {@link AccountingService#findAllInvoicesByUser(Long)}, one user
+ * lookup plus {@code width} invoice lookups composed into a {@link UserInvoices}, across the
+ * concurrency models this workshop talks about. The downstream services are simulated with a
+ * sleep of {@code latencyMillis} so that the numbers measure the concurrency model and not
+ * console output.
+ * <p>
+ * {@link Mode#Throughput} gives operations per second, {@link Mode#SampleTime} gives the p50 and
+ * p99 latency for each combination of downstream latency and fan-out width.
+ * <p>
+ * Run with {@code mvn -Pjmh package && java --enable-preview -jar target/benchmarks.jar FanOutBenchmark}
+ */
+@SuppressWarnings("preview")
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Threads(8)
+public class FanOutBenchmark {
+
+    @Param({"0", "1", "10"})
+    public int latencyMillis;
+
+    @Param({"2", "16", "128"})
+    public int width;
+
+    @Param({"64"})
+    public int platformPoolSize;
+
+    private ExecutorService platformPool;
+    private ExecutorService virtualThreadPerTask;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        platformPool = Executors.newFixedThreadPool(platformPoolSize);
+        virtualThreadPerTask = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        platformPool.close();
+        virtualThreadPerTask.close();
+    }
+
+    @Benchmark
+    public UserInvoices structuredTaskScope() throws InterruptedException {
+        try (var scope = StructuredTaskScope.open()) {
+            StructuredTaskScope.Subtask<User> user = scope.fork(this::findUser);
+            List<StructuredTaskScope.Subtask<List<Invoice>>> invoices = new ArrayList<>(width);
+            for (int i = 0; i < width; i++) {
+                invoices.add(scope.fork(this::findInvoices));
+            }
+            scope.join();
+            return compose(user.get(), invoices.stream().map(StructuredTaskScope.Subtask::get).toList());
+        }
+    }
+
+    @Benchmark
+    public UserInvoices fixedPlatformPool() throws InterruptedException, ExecutionException {
+        Future<User> user = platformPool.submit(this::findUser);
+        List<Callable<List<Invoice>>> calls = IntStream.range(0, width)
+            .<Callable<List<Invoice>>>mapToObj(_ -> this::findInvoices)
+            .toList();
+        List<List<Invoice>> invoices = new ArrayList<>(width);
+        for (Future<List<Invoice>> future : platformPool.invokeAll(calls)) {
+            invoices.add(future.get());
+        }
+        return compose(user.get(), invoices);
+    }
+
+    @Benchmark
+    public UserInvoices completableFuture() {
+        CompletableFuture<User> user = CompletableFuture.supplyAsync(this::findUser, virtualThreadPerTask);
+        List<CompletableFuture<List<Invoice>>> invoices = IntStream.range(0, width)
+            .mapToObj(_ -> CompletableFuture.supplyAsync(this::findInvoices, virtualThreadPerTask))
+            .toList();
+        return CompletableFuture.allOf(invoices.toArray(CompletableFuture[]::new))
+            .thenCombine(user, (_, u) -> compose(u, invoices.stream().map(CompletableFuture::join).toList()))
+            .join();
+    }
+
+    @Benchmark
+    public UserInvoices reactor() {
+        Mono<User> user = Mono.fromCallable(this::findUser).subscribeOn(Schedulers.boundedElastic());
+        Mono<List<List<Invoice>>> invoices = Flux.range(0, width)
+            .flatMap(_ -> Mono.fromCallable(this::findInvoices).subscribeOn(Schedulers.boundedElastic()), width)
+            .collectList();
+        return Mono.zip(user, invoices, this::compose).block();
+    }
+
+    @Benchmark
+    public UserInvoices rxJava() {
+        var user = Flowable.fromCallable(this::findUser)
+            .subscribeOn(io.reactivex.rxjava3.schedulers.Schedulers.io());
+        var invoices = Flowable.range(0, width)
+            .flatMap(_ -> Flowable.fromCallable(this::findInvoices)
+                .subscribeOn(io.reactivex.rxjava3.schedulers.Schedulers.io()), width)
+            .toList()
+            .toFlowable();
+        return Flowable.zip(user, invoices, this::compose).blockingFirst();
+    }
+
+    private UserInvoices compose(User user, List<List<Invoice>> invoices) {
+        return new UserInvoices(user, invoices.stream().flatMap(List::stream).toList());
+    }
+
+    private User findUser() {
+        simulateLatency();
+        return new User("Simon", "Roberts");
+    }
+
+    private List<Invoice> findInvoices() {
+        simulateLatency();
+        return List.of(new Invoice("402", 1120.00F));
+    }
+
+    private void simulateLatency() {
+        if (latencyMillis == 0) return;
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable appends per second into {@link InvoiceLog} by number of concurrent writers and
+ * group-commit window. Every invocation has {@code writers} virtual threads append
+ * {@link #APPENDS_PER_WRITER} invoices each. The {@code appends} score is appends per second,
+ * so one force per append shows as a flat line and group commit as a line that rises with
+ * writers.
+ * Run it on the disk you care about, a tmpfs makes force free.
+ */
+@SuppressWarnings("preview")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class InvoiceLogBenchmark {
+    private static final int APPENDS_PER_WRITER = 16;
+
+    @Param({"1", "16", "256", "4096"})
+    public int writers;
+
+    @Param({"0", "200", "1000"})
+    public int windowMicros;
+
+    private Path file;
+    private InvoiceLog log;
+    private Invoice invoice;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("invoice-log", ".log");
+        log = InvoiceLog.open(file, Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(windowMicros)), 4096);
+        invoice = new Invoice("1402", 1220.00F);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        System.out.printf("%n%d appends in %d group commits%n", log.appendCount(), log.commitCount());
+        log.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Reported by JMH as an extra {@code appends} score next to the invocations per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long appends;
+    }
+
+    @Benchmark
+    public void appendBatch(Counters counters) throws InterruptedException {
+        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll())) {
+            for (int w = 0; w < writers; w++) {
+                long userId = w;
+                scope.fork(() -> {
+                    for (int i = 0; i < APPENDS_PER_WRITER; i++) {
+                        log.append(userId, invoice);
+                    }
+                    return null;
+                });
+            }
+            scope.join();
+        }
+        counters.appends += (long) writers * APPENDS_PER_WRITER;
+    }
+}
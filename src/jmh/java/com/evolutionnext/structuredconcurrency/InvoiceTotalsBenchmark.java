@@ -0,0 +1,95 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Global and per-user invoice totals over {@code Map<Long, List<Invoice>>}, as the services
+ * hand them out today, against {@link ColumnarInvoiceStore} with a scalar loop and with the
+ * Vector API. Add {@code -prof gc} to compare the footprint of the two layouts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector", "-Xmx8g"})
+public class InvoiceTotalsBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int invoices;
+
+    @Param({"10000"})
+    public int users;
+
+    private Map<Long, List<Invoice>> invoicesByUser;
+    private ColumnarInvoiceStore store;
+    private long userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        invoicesByUser = new HashMap<>();
+        ColumnarInvoiceStore.Builder builder = new ColumnarInvoiceStore.Builder();
+        for (int i = 0; i < invoices; i++) {
+            long user = random.nextInt(users);
+            Invoice invoice = new Invoice(String.valueOf(i % 100_000), random.nextInt(100_000) / 100.0F);
+            invoicesByUser.computeIfAbsent(user, _ -> new ArrayList<>()).add(invoice);
+            builder.add(user, invoice);
+        }
+        store = builder.build();
+        userId = users / 2;
+    }
+
+    @Benchmark
+    public double totalOverObjects() {
+        double total = 0.0;
+        for (List<Invoice> list : invoicesByUser.values()) {
+            for (Invoice invoice : list) {
+                total += invoice.amount();
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double totalScalar() {
+        return store.totalScalar();
+    }
+
+    @Benchmark
+    public double totalVector() {
+        return store.total();
+    }
+
+    @Benchmark
+    public double userTotalOverObjects() {
+        double total = 0.0;
+        for (Invoice invoice : invoicesByUser.getOrDefault(userId, List.of())) {
+            total += invoice.amount();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public double userTotalVector() {
+        return store.totalForUser(userId);
+    }
+}
@@ -1,5 +1,8 @@
 package com.evolutionnext.scopedvalues;
 
+import com.evolutionnext.structuredconcurrency.ReducingJoiners;
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.StructuredTaskScope;
 import java.util.concurrent.atomic.AtomicLong;
@@ -15,12 +18,29 @@ public class MillionsOfTasks {
         try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.anySuccessfulResultOrThrow())) {
             for (int i = 0; i < 1000000; i++) {
                 scope.fork(() -> {
-                    System.out.printf("Freddy Rules - %d on Thread[%s]%n", atomicLong.incrementAndGet(), Thread.currentThread());
+                    AsyncLogSink.stdout().printf("Freddy Rules - %d on Thread[%s]%n", atomicLong.incrementAndGet(), Thread.currentThread());
                     return 3 + 3;
                 });
             }
             scope.join();
-            System.out.println("Complete");
+            AsyncLogSink.stdout().println("Complete");
+        }
+    }
+
+    /**
+     * Forks many subtasks like {@link #submit()}, but each result is folded into a sum as it
+     * completes. The Joiner holds no Subtask, so the heap stays flat no matter the count.
+     *
+     * @param tasks the number of subtasks to fork
+     * @return the sum of every subtask's result
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public long sum(int tasks) throws InterruptedException {
+        try (var scope = StructuredTaskScope.open(ReducingJoiners.<Integer>summingLong(Integer::longValue))) {
+            for (int i = 0; i < tasks; i++) {
+                scope.fork(() -> 3 + 3);
+            }
+            return scope.join();
         }
     }
 
@@ -0,0 +1,58 @@
+package com.evolutionnext.scopedvalues;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * The context of the request being served: tenant, trace id and authenticated principal.
+ * It is bound in a {@link ScopedValue} for the extent of the request, so every
+ * {@code StructuredTaskScope} fork sees it without a per-thread copy, and a nested
+ * binding, e.g. acting as another principal, ends with its scope.
+ * <pre>{@code
+ * new RequestContext("acme", traceId, "simon").run(() -> accountingService.findAllInvoicesByUser(1L));
+ * ...
+ * String tenant = RequestContext.current().tenant();
+ * }</pre>
+ * Code that still expects a {@link ThreadLocal} can use {@link #THREAD_LOCAL}.
+ */
+public record RequestContext(String tenant, String traceId, String principal) {
+    private static final ScopedValue<RequestContext> CURRENT = ScopedValue.newInstance();
+
+    public static final ScopedThreadLocal<RequestContext> THREAD_LOCAL = new ScopedThreadLocal<>(CURRENT);
+
+    public RequestContext {
+        Objects.requireNonNull(tenant, "tenant");
+        Objects.requireNonNull(traceId, "traceId");
+        Objects.requireNonNull(principal, "principal");
+    }
+
+    public static RequestContext newTrace(String tenant, String principal) {
+        return new RequestContext(tenant, UUID.randomUUID().toString(), principal);
+    }
+
+    /**
+     * @throws NoSuchElementException if no request context is bound
+     */
+    public static RequestContext current() {
+        if (!CURRENT.isBound()) throw new NoSuchElementException("No request context is bound");
+        return CURRENT.get();
+    }
+
+    public static Optional<RequestContext> find() {
+        return CURRENT.isBound() ? Optional.of(CURRENT.get()) : Optional.empty();
+    }
+
+    public RequestContext withPrincipal(String principal) {
+        return new RequestContext(tenant, traceId, principal);
+    }
+
+    public void run(Runnable op) {
+        ScopedValue.where(CURRENT, this).run(op);
+    }
+
+    public <T, X extends Throwable> T call(ScopedValue.CallableOp<? extends T, X> op) throws X {
+        return ScopedValue.where(CURRENT, this).call(op);
+    }
+}
@@ -0,0 +1,46 @@
+package com.evolutionnext.scopedvalues;
+
+/**
+ * A {@link ThreadLocal} facade over a {@link ScopedValue}, for code that still expects a
+ * {@code ThreadLocal}. {@link #get()} answers the scoped binding when there is one and
+ * falls back to an ordinary thread-local value otherwise, so legacy callers that
+ * {@code set} and {@code remove} keep working outside a scope.
+ * <p>
+ * Inside a binding the value is immutable, {@link #set} and {@link #remove} throw,
+ * rebind with {@code ScopedValue.where} instead. The fallback is a plain, not an
+ * inheritable, thread local, forks see the scoped binding.
+ *
+ * @param <T> the type of the value
+ */
+public class ScopedThreadLocal<T> extends ThreadLocal<T> {
+    private final ScopedValue<T> scopedValue;
+
+    public ScopedThreadLocal(ScopedValue<T> scopedValue) {
+        this.scopedValue = scopedValue;
+    }
+
+    public ScopedValue<T> scopedValue() {
+        return scopedValue;
+    }
+
+    @Override
+    public T get() {
+        return scopedValue.isBound() ? scopedValue.get() : super.get();
+    }
+
+    @Override
+    public void set(T value) {
+        if (scopedValue.isBound()) {
+            throw new UnsupportedOperationException("Value is bound by a ScopedValue, rebind it with ScopedValue.where");
+        }
+        super.set(value);
+    }
+
+    @Override
+    public void remove() {
+        if (scopedValue.isBound()) {
+            throw new UnsupportedOperationException("Value is bound by a ScopedValue and ends with its scope");
+        }
+        super.remove();
+    }
+}
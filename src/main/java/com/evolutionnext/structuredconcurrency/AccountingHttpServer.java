@@ -0,0 +1,248 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.evolutionnext.scopedvalues.RequestContext;
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.StructuredTaskScope;
+
+/**
+ * A thread-per-request HTTP front end for {@link AccountingService} on the JDK's built-in
+ * {@code com.sun.net.httpserver}. By default every exchange runs on its own virtual thread,
+ * so the blocking structured scopes underneath need no async plumbing.
+ * <ul>
+ *     <li>{@code GET /users/{id}/invoices}, {@link AccountingService#findAllInvoicesByUser(Long)}</li>
+ *     <li>{@code GET /users/{id}/summary}, {@link AccountingService#findInvoiceSummaryByUser(long)}</li>
+ *     <li>{@code GET /users?ids=1,2,3}, {@link AccountingService#findAllUsers(long...)}</li>
+ * </ul>
+ * Responses are written with a streaming Jackson {@link JsonGenerator} into a byte buffer, no
+ * intermediate string or tree is built, and sent with a fixed content length. Nothing is sent
+ * before the body is complete, so a failure while encoding is still answered with a 500
+ * instead of a truncated 200. Given an
+ * {@link EncodedResponseCache}, invoices are served from cached bytes instead, with a fixed
+ * content length, and only misses reach the services.
+ * <p>
+ * Run it with {@code java --enable-preview ... AccountingHttpServer [port] [virtual|fixed:N] [cached]}
+ * and drive it with {@link AccountingLoadClient}. Its scopes can be inspected live through the
+ * {@link ScopeInspector} it registers over JMX.
+ */
+@SuppressWarnings("preview")
+public class AccountingHttpServer implements AutoCloseable {
+    private final AccountingService accountingService;
+    private final EncodedResponseCache cache;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private AccountingHttpServer(AccountingService accountingService, EncodedResponseCache cache, HttpServer server,
+                                 ExecutorService executor) {
+        this.accountingService = accountingService;
+        this.cache = cache;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a server handling each exchange on the given executor, which is closed with
+     * the server. Port 0 picks a free port.
+     */
+    public static AccountingHttpServer start(AccountingService accountingService, InetSocketAddress address,
+                                             ExecutorService executor) throws IOException {
+        return start(accountingService, null, address, executor);
+    }
+
+    /**
+     * Like {@link #start(AccountingService, InetSocketAddress, ExecutorService)}, invoices are
+     * served from the cache when it is not null.
+     */
+    public static AccountingHttpServer start(AccountingService accountingService, EncodedResponseCache cache,
+                                             InetSocketAddress address, ExecutorService executor) throws IOException {
+        HttpServer server = HttpServer.create(address, 0);
+        AccountingHttpServer httpServer = new AccountingHttpServer(accountingService, cache, server, executor);
+        server.createContext("/users", httpServer::handleUsers);
+        server.setExecutor(executor);
+        server.start();
+        return httpServer;
+    }
+
+    public static AccountingHttpServer start(AccountingService accountingService, int port) throws IOException {
+        return start(accountingService, new InetSocketAddress(port), Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    /**
+     * Binds the {@link RequestContext} from the {@code X-Tenant}, {@code X-Trace-Id} and
+     * {@code X-Principal} headers for the whole exchange, the trace id is echoed back.
+     */
+    private void handleUsers(HttpExchange exchange) throws IOException {
+        var headers = exchange.getRequestHeaders();
+        String traceId = headers.getFirst("X-Trace-Id");
+        RequestContext context = new RequestContext(
+            Objects.requireNonNullElse(headers.getFirst("X-Tenant"), "default"),
+            traceId != null ? traceId : UUID.randomUUID().toString(),
+            Objects.requireNonNullElse(headers.getFirst("X-Principal"), "anonymous"));
+        exchange.getResponseHeaders().set("X-Trace-Id", context.traceId());
+        context.call(() -> {
+            route(exchange);
+            return null;
+        });
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                respondError(exchange, 405, "Method not allowed");
+                return;
+            }
+            String[] segments = exchange.getRequestURI().getPath().split("/");
+            // The context is a prefix match, it routes /usersX here too
+            if (segments.length < 2 || !segments[1].equals("users")) {
+                respondError(exchange, 404, "Not found");
+            } else if (segments.length == 2) {
+                findAllUsers(exchange);
+            } else if (segments.length == 4 && segments[3].equals("invoices")) {
+                findAllInvoicesByUser(exchange, Long.parseLong(segments[2]));
+            } else if (segments.length == 4 && segments[3].equals("summary")) {
+                findInvoiceSummaryByUser(exchange, Long.parseLong(segments[2]));
+            } else {
+                respondError(exchange, 404, "Not found");
+            }
+        } catch (NumberFormatException e) {
+            respondError(exchange, 400, "Invalid id: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respondError(exchange, 503, "Interrupted");
+        } catch (StructuredTaskScope.TimeoutException e) {
+            respondError(exchange, 504, "Timed out");
+        } catch (StructuredTaskScope.FailedException | ExecutionException e) {
+            respondFailure(exchange, e.getCause());
+        } catch (ServiceUnavailableException | DeadlineExceededException e) {
+            // Thrown directly, not from a subtask, when a scope is opened past the deadline
+            respondFailure(exchange, e);
+        } catch (RuntimeException e) {
+            // Anything left would reach the HttpServer, which drops the connection without a response
+            respondInternalError(exchange, e);
+        }
+    }
+
+    private void findAllInvoicesByUser(HttpExchange exchange, long id) throws IOException, InterruptedException {
+        if (cache != null) {
+            EncodedResponse response = cache.userInvoices(id);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length());
+            try (OutputStream out = exchange.getResponseBody()) {
+                response.writeTo(out);
+            }
+            return;
+        }
+        UserInvoices userInvoices = accountingService.findAllInvoicesByUser(id);
+        respond(exchange, 200, json -> AccountingJson.writeUserInvoices(json, userInvoices));
+    }
+
+    private void findInvoiceSummaryByUser(HttpExchange exchange, long id) throws IOException, InterruptedException {
+        UserInvoiceSummary summary = accountingService.findInvoiceSummaryByUser(id);
+        respond(exchange, 200, json -> AccountingJson.writeUserInvoiceSummary(json, summary));
+    }
+
+    private void findAllUsers(HttpExchange exchange) throws IOException, InterruptedException, ExecutionException {
+        String ids = queryParameter(exchange, "ids");
+        if (ids == null || ids.isBlank()) {
+            respondError(exchange, 400, "Missing ids");
+            return;
+        }
+        List<User> users = accountingService.findAllUsers(Arrays.stream(ids.split(","))
+            .map(String::trim)
+            .mapToLong(Long::parseLong)
+            .toArray());
+        respond(exchange, 200, json -> {
+            json.writeStartArray();
+            for (User user : users) {
+                AccountingJson.writeUser(json, user);
+            }
+            json.writeEndArray();
+        });
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) return null;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) return pair.substring(equals + 1);
+        }
+        return null;
+    }
+
+    private static void respondFailure(HttpExchange exchange, Throwable cause) throws IOException {
+        // The services signal an unknown id with a NoSuchElementException, anything else is a bug
+        if (cause instanceof NoSuchElementException) {
+            respondError(exchange, 404, "Not found");
+        } else if (cause instanceof ServiceUnavailableException || cause instanceof DeadlineExceededException) {
+            respondError(exchange, 503, cause.getMessage());
+        } else {
+            respondInternalError(exchange, cause);
+        }
+    }
+
+    private static void respondInternalError(HttpExchange exchange, Throwable cause) throws IOException {
+        AsyncLogSink.stdout().printf("Request %s [trace %s] failed: %s%n", exchange.getRequestURI(),
+            RequestContext.current().traceId(), cause);
+        respondError(exchange, 500, "Internal error");
+    }
+
+    private static void respondError(HttpExchange exchange, int status, String message) throws IOException {
+        respond(exchange, status, json -> {
+            json.writeStartObject();
+            json.writeStringField("error", message);
+            json.writeEndObject();
+        });
+    }
+
+    private static void respond(HttpExchange exchange, int status, AccountingJson.Writer body) throws IOException {
+        // Encoded before the headers go out, a writer that throws leaves the exchange free for the 500
+        byte[] bytes = AccountingJson.encode(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        String mode = args.length > 1 ? args[1] : "virtual";
+        ExecutorService executor = mode.startsWith("fixed:")
+            ? Executors.newFixedThreadPool(Integer.parseInt(mode.substring("fixed:".length())))
+            : Executors.newVirtualThreadPerTaskExecutor();
+        AccountingService accountingService = new AccountingService(new UserService(), new InvoiceService());
+        EncodedResponseCache cache = args.length > 2 && args[2].equals("cached")
+            ? new EncodedResponseCache(accountingService)
+            : null;
+        AccountingHttpServer server = start(accountingService, cache, new InetSocketAddress(port), executor);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        ScopeInspector.register(new ScopeInspector());
+        AsyncLogSink.stdout().printf("Listening on port %d with %s threads%n", server.port(), mode);
+    }
+}
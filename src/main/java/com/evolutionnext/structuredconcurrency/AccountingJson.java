@@ -0,0 +1,82 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * The JSON shapes of the accounting records, written with a streaming generator. Shared by
+ * {@link AccountingHttpServer} and {@link EncodedResponseCache} so cached and freshly
+ * written responses are byte for byte the same.
+ */
+final class AccountingJson {
+    static final JsonFactory JSON = new JsonFactory();
+
+    @FunctionalInterface
+    interface Writer {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    private AccountingJson() {
+    }
+
+    static void writeUser(JsonGenerator json, User user) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("firstName", user.firstName());
+        json.writeStringField("lastName", user.lastName());
+        json.writeEndObject();
+    }
+
+    static void writeInvoices(JsonGenerator json, List<Invoice> invoices) throws IOException {
+        json.writeStartArray();
+        for (Invoice invoice : invoices) {
+            json.writeStartObject();
+            json.writeStringField("number", invoice.number());
+            json.writeNumberField("amount", invoice.amount());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    static void writeUserInvoices(JsonGenerator json, UserInvoices userInvoices) throws IOException {
+        json.writeStartObject();
+        json.writeFieldName("user");
+        writeUser(json, userInvoices.user());
+        json.writeFieldName("invoices");
+        writeInvoices(json, userInvoices.invoices());
+        json.writeEndObject();
+    }
+
+    static void writeUserInvoiceSummary(JsonGenerator json, UserInvoiceSummary userInvoiceSummary) throws IOException {
+        InvoiceSummary summary = userInvoiceSummary.invoices();
+        json.writeStartObject();
+        json.writeFieldName("user");
+        writeUser(json, userInvoiceSummary.user());
+        json.writeNumberField("count", summary.count());
+        json.writeNumberField("total", summary.total());
+        json.writeFieldName("latest");
+        if (summary.latest() == null) {
+            json.writeNull();
+        } else {
+            json.writeStartObject();
+            json.writeStringField("number", summary.latest().number());
+            json.writeNumberField("amount", summary.latest().amount());
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+    }
+
+    static byte[] encode(Writer writer) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator json = JSON.createGenerator(out)) {
+            writer.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A closed-loop load client for {@link AccountingHttpServer}: {@code concurrency} virtual
+ * threads each send a request, wait for the response and send the next until the time is
+ * up. Reports requests per second and latency percentiles.
+ * <p>
+ * {@code main} starts the server in-process twice, once with a virtual thread per request
+ * and once with a fixed pool, and runs the same load against both:
+ * {@code AccountingLoadClient [concurrency] [seconds] [fixedPoolSize] [path]}
+ */
+@SuppressWarnings("preview")
+public class AccountingLoadClient {
+
+    public record Result(long requests, long errors, Duration elapsed, LatencyHistogram.Summary latency) {
+        public double requestsPerSecond() {
+            return requests / (elapsed.toNanos() / 1_000_000_000.0);
+        }
+    }
+
+    public static Result run(URI uri, int concurrency, Duration duration) throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        HttpRequest request = HttpRequest.newBuilder(uri).GET().build();
+        try (ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                 .version(HttpClient.Version.HTTP_1_1)
+                 .executor(clientExecutor)
+                 .build()) {
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll())) {
+                for (int i = 0; i < concurrency; i++) {
+                    scope.fork(() -> {
+                        while (System.nanoTime() < end) {
+                            long sent = System.nanoTime();
+                            try {
+                                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                                if (response.statusCode() != 200) errors.increment();
+                            } catch (IOException e) {
+                                errors.increment();
+                            }
+                            histogram.recordNanos(System.nanoTime() - sent);
+                        }
+                        return null;
+                    });
+                }
+                scope.join();
+            }
+            return new Result(histogram.count(), errors.sum(), Duration.ofNanos(System.nanoTime() - start),
+                histogram.summary());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 1_000;
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 10);
+        int fixedPoolSize = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        String path = args.length > 3 ? args[3] : "/users/1/invoices";
+        AccountingService accountingService = new AccountingService(new UserService(), new InvoiceService());
+
+        try (AccountingHttpServer server = AccountingHttpServer.start(accountingService,
+            new InetSocketAddress("localhost", 0), Executors.newVirtualThreadPerTaskExecutor())) {
+            report("virtual", run(URI.create("http://localhost:" + server.port() + path), concurrency, duration));
+        }
+        try (AccountingHttpServer server = AccountingHttpServer.start(accountingService,
+            new InetSocketAddress("localhost", 0), Executors.newFixedThreadPool(fixedPoolSize))) {
+            report("fixed:" + fixedPoolSize,
+                run(URI.create("http://localhost:" + server.port() + path), concurrency, duration));
+        }
+    }
+
+    private static void report(String mode, Result result) {
+        AsyncLogSink.stdout().printf("%-10s %,10.0f req/s  %,d requests  %,d errors  %s%n",
+            mode, result.requestsPerSecond(), result.requests(), result.errors(), result.latency());
+    }
+}
@@ -1,38 +1,139 @@
 package com.evolutionnext.structuredconcurrency;
 
+import com.evolutionnext.structuredconcurrency.jfr.ObservedJoiner;
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
 import java.util.concurrent.StructuredTaskScope;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 
 @SuppressWarnings("preview")
 public class AccountingService {
     private final UserService userService;
     private final InvoiceService invoiceService;
+    private final ServiceGuard userServiceGuard;
+    private final ServiceGuard invoiceServiceGuard;
 
     public AccountingService(UserService userService, InvoiceService invoiceService) {
+        this(userService, invoiceService,
+            ServiceGuard.withDefaults("UserService"), ServiceGuard.withDefaults("InvoiceService"));
+    }
+
+    public AccountingService(UserService userService, InvoiceService invoiceService,
+                             ServiceGuard userServiceGuard, ServiceGuard invoiceServiceGuard) {
         this.userService = userService;
         this.invoiceService = invoiceService;
+        this.userServiceGuard = userServiceGuard;
+        this.invoiceServiceGuard = invoiceServiceGuard;
     }
 
     public UserInvoices findAllInvoicesByUser(Long id)
         throws InterruptedException {
-        try (var scope = StructuredTaskScope.open()) {
-            StructuredTaskScope.Subtask<User> user = scope.fork(() -> userService.findUser(id));
-            StructuredTaskScope.Subtask<List<Invoice>> order = scope.fork(() -> invoiceService.findAllInvoicesByUser(id));
+        // Same Joiner as `StructuredTaskScope.open()`, observed so it shows up in JFR
+        var joiner = ObservedJoiner.observe("findAllInvoicesByUser",
+            StructuredTaskScope.Joiner.awaitAllSuccessfulOrThrow());
+        try (var scope = Deadline.open(joiner)) {
+            StructuredTaskScope.Subtask<User> user = joiner.fork(scope, "UserService", () -> userService.findUser(id));
+            StructuredTaskScope.Subtask<List<Invoice>> order =
+                joiner.fork(scope, "InvoiceService", () -> invoiceService.findAllInvoicesByUser(id));
 
-            scope.join();
+            joiner.join(scope);
 
             // Here, both subtasks have succeeded, so compose their results
             return new UserInvoices(user.get(), order.get());
         }
     }
 
+    /**
+     * The summary-only counterpart of `findAllInvoicesByUser`, for dashboards that show a
+     * balance and not the invoices. Backed by a `LoggedInvoiceService` this is answered from
+     * its `BalanceView` without reading a single invoice.
+     *
+     * @param id ID of the User
+     * @return UserInvoiceSummary
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public UserInvoiceSummary findInvoiceSummaryByUser(long id) throws InterruptedException {
+        var joiner = ObservedJoiner.observe("findInvoiceSummaryByUser",
+            StructuredTaskScope.Joiner.awaitAllSuccessfulOrThrow());
+        try (var scope = Deadline.open(joiner)) {
+            StructuredTaskScope.Subtask<User> user = joiner.fork(scope, "UserService", () -> userService.findUser(id));
+            StructuredTaskScope.Subtask<InvoiceSummary> summary =
+                joiner.fork(scope, "InvoiceService", () -> invoiceService.summarizeInvoicesByUser(id));
+
+            joiner.join(scope);
+            return new UserInvoiceSummary(user.get(), summary.get());
+        }
+    }
+
+
+    /**
+     * Like `findAllInvoicesByUser`, but each service call goes through its `ServiceGuard`.
+     * While a service is unhealthy or at its concurrency limit its subtask fails at once,
+     * which cancels the scope, so the request fails fast with a
+     * `ServiceUnavailableException` instead of waiting on the slow service.
+     *
+     * @param id ID of the User
+     * @return UserInvoices
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public UserInvoices findAllInvoicesByUserWithLoadShedding(long id) throws InterruptedException {
+        var joiner = ObservedJoiner.observe("findAllInvoicesByUserWithLoadShedding",
+            StructuredTaskScope.Joiner.awaitAllSuccessfulOrThrow());
+        try (var scope = Deadline.open(joiner)) {
+            StructuredTaskScope.Subtask<User> user = joiner.fork(scope, "UserService",
+                userServiceGuard.protect(() -> userService.findUser(id)));
+            StructuredTaskScope.Subtask<List<Invoice>> invoices = joiner.fork(scope, "InvoiceService",
+                invoiceServiceGuard.protect(() -> invoiceService.findAllInvoicesByUser(id)));
+            joiner.join(scope);
+            return new UserInvoices(user.get(), invoices.get());
+        }
+    }
+
+    /**
+     * The user lookup of `findAllInvoicesByUserWithLoadShedding` on its own, behind the same
+     * guard, so an `EncodedResponseCache` miss is shed like an uncached request.
+     */
+    Callable<User> guardedFindUser(long id) {
+        return userServiceGuard.protect(() -> userService.findUser(id));
+    }
 
+    /**
+     * The invoice lookup of `findAllInvoicesByUserWithLoadShedding` on its own, behind the same guard.
+     */
+    Callable<List<Invoice>> guardedFindAllInvoicesByUser(long id) {
+        return invoiceServiceGuard.protect(() -> invoiceService.findAllInvoicesByUser(id));
+    }
+
+    /**
+     * Streaming variant of `findAllInvoicesByUser`. The user is looked up as before, but the
+     * invoices come back as a cold publisher, nothing is read until the caller subscribes and
+     * then only as fast as it requests, so the memory a request holds stays bounded however
+     * many invoices the user has.
+     *
+     * @param id ID of the User
+     * @return StreamingUserInvoices
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public StreamingUserInvoices streamAllInvoicesByUser(long id) throws InterruptedException {
+        try (var scope = StructuredTaskScope.open()) {
+            StructuredTaskScope.Subtask<User> user = scope.fork(() -> userService.findUser(id));
+            StructuredTaskScope.Subtask<Flow.Publisher<Invoice>> invoices =
+                scope.fork(() -> invoiceService.streamAllInvoicesByUser(id));
+            scope.join();
+            return new StreamingUserInvoices(user.get(), invoices.get());
+        }
+    }
 
     /**
      * While you can return a `Supplier<T>` from fork, you may choose to bring in `Subtask`. Subtask
@@ -85,11 +186,62 @@ public class AccountingService {
         }
     }
 
+    /**
+     * Unlike `findAllInvoicesByUserWithLatencyService`, this never waits longer than `budget`
+     * and never throws away what it has. Whatever succeeded in time is returned fresh, a part
+     * that is late or failed is marked missing, or stale if `lastKnownInvoices` has a value
+     * for it. The slow subtask is cancelled.
+     *
+     * @param id ID of the User
+     * @param budget how long to wait for the parts, shortened by the request's `Deadline`
+     * @param lastKnownInvoices invoices to fall back on, e.g. from a cache
+     * @return PartialUserInvoices
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public PartialUserInvoices findAllInvoicesByUserWithinBudget(long id, Duration budget,
+                                                                 LongFunction<Optional<List<Invoice>>> lastKnownInvoices)
+        throws InterruptedException {
+        var joiner = PartialResultJoiner.<Object>all();
+        // Not Deadline.open: a scope timeout would throw instead of degrading, forkDeadline
+        // already cuts the budget down to the request's Deadline and returns what has arrived
+        try (var scope = StructuredTaskScope.open(joiner)) {
+            StructuredTaskScope.Subtask<User> user = scope.fork(() -> userService.findUser(id));
+            StructuredTaskScope.Subtask<List<Invoice>> invoices =
+                scope.fork(() -> invoiceService.findAllInvoicesByUserLongTime(id));
+            joiner.forkDeadline(scope, budget);
+            scope.join();
+
+            PartialUserInvoices.Part<User> userPart = user.state() == StructuredTaskScope.Subtask.State.SUCCESS
+                ? PartialUserInvoices.Part.fresh(user.get())
+                : PartialUserInvoices.Part.missing();
+            PartialUserInvoices.Part<List<Invoice>> invoicesPart =
+                invoices.state() == StructuredTaskScope.Subtask.State.SUCCESS
+                    ? PartialUserInvoices.Part.fresh(invoices.get())
+                    : lastKnownInvoices.apply(id)
+                        .map(PartialUserInvoices.Part::stale)
+                        .orElseGet(PartialUserInvoices.Part::missing);
+            return new PartialUserInvoices(userPart, invoicesPart);
+        }
+    }
+
+    public PartialUserInvoices findAllInvoicesByUserWithinBudget(long id, Duration budget) throws InterruptedException {
+        return findAllInvoicesByUserWithinBudget(id, budget, _ -> Optional.empty());
+    }
+
+    /**
+     * The first service to answer wins. The loser is interrupted and its
+     * {@link CancellationToken} cancelled, so it stops even while computing.
+     *
+     * @param id ID of the User
+     * @return the user or the invoices, whichever came first
+     * @throws InterruptedException if the tasks are interrupted
+     */
     public String findAllEitherUserOrInvoices(long id) throws InterruptedException, ExecutionException {
-        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.anySuccessfulResultOrThrow())) {
-            scope.fork(() -> userService.findUser(id));
-            scope.fork(() -> invoiceService.findAllInvoicesByUserLongTime(id));
-            return switch (scope.join()) {
+        var joiner = CancellableJoiner.wrap(StructuredTaskScope.Joiner.<Object>anySuccessfulResultOrThrow());
+        try (var scope = StructuredTaskScope.open(joiner)) {
+            joiner.fork(scope, () -> userService.findUser(id));
+            joiner.fork(scope, () -> invoiceService.findAllInvoicesByUserLongTime(id));
+            return switch (joiner.join(scope)) {
                 case User(var firstName, var lastName) -> String.format("User: %s %s", firstName, lastName);
                 case List<?> list -> String.format("A list of %s", list);
                 default -> "Unknown";
@@ -97,6 +249,26 @@ public class AccountingService {
         }
     }
 
+    /**
+     * The user lookup is hedged: the slow replica, `findUserLongTime`, is asked first and
+     * if it has not answered within `hedgeDelay` a second replica is asked as well. The
+     * first answer wins and the other call is cancelled.
+     *
+     * @param id ID of the User
+     * @param hedgeDelay how long to wait for the primary before hedging, typically its p95
+     * @return UserInvoices
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public UserInvoices findAllInvoicesByUserWithHedgedUserService(long id, Duration hedgeDelay) throws InterruptedException {
+        try (var scope = Deadline.open(StructuredTaskScope.Joiner.awaitAllSuccessfulOrThrow())) {
+            StructuredTaskScope.Subtask<User> user = scope.fork(() ->
+                Hedging.hedge(() -> userService.findUserLongTime(id), () -> userService.findUser(id), hedgeDelay));
+            StructuredTaskScope.Subtask<List<Invoice>> invoices = scope.fork(() -> invoiceService.findAllInvoicesByUser(id));
+            scope.join();
+            return new UserInvoices(user.get(), invoices.get());
+        }
+    }
+
     public String findAllEitherUserOrInvoicesFromUserServiceWithLatency(long id) throws InterruptedException, ExecutionException {
         try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.anySuccessfulResultOrThrow())) {
             scope.fork(() -> userService.findUserLongTime(id));
@@ -111,7 +283,7 @@ public class AccountingService {
 
     @SuppressWarnings("UnusedReturnValue")
     public List<User> findAllUsers(long... ids) throws InterruptedException, ExecutionException {
-        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.<User>allSuccessfulOrThrow())) {
+        try (var scope = Deadline.open(StructuredTaskScope.Joiner.<User>allSuccessfulOrThrow())) {
             Arrays.stream(ids).boxed().forEach(id -> scope.fork(() -> userService.findUser(id)));
             // Here I expect all subtasks to be a User, so I can call scope.join() with a result
             return scope.join().map(StructuredTaskScope.Subtask::get).toList();
@@ -122,12 +294,39 @@ public class AccountingService {
         // Await all is for side effects, notice the result type of scope.join() is void
         try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.<User>awaitAll())) {
             Arrays.stream(ids).boxed().forEach(i -> scope.fork(() -> {
-                System.out.printf("User retrieved and side-effected %s%n", userService.findUser(i));
+                AsyncLogSink.stdout().printf("User retrieved and side-effected %s%n", userService.findUser(i));
             }));
             scope.join();
         }
     }
 
+    /**
+     * Like `findAllUsers`, but with at most `maxInFlight` lookups running at once, and
+     * every user is handed to the consumer as soon as it arrives, nothing is held until
+     * the end. Suited to very large id sets. The consumer is called concurrently.
+     *
+     * @param consumer receives each user, from the subtask's thread
+     * @param maxInFlight the maximum number of concurrent lookups
+     * @param ids the ids of the users
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public void streamAllUsers(Consumer<? super User> consumer, int maxInFlight, long... ids) throws InterruptedException {
+        BoundedScope.forEach(Arrays.stream(ids).iterator(), maxInFlight, userService::findUser, consumer);
+    }
+
+    /**
+     * Month-end report across every user: invoices are fetched on virtual threads and the
+     * totals, aging buckets and top invoices are reduced in parallel on the common pool.
+     *
+     * @param ageInDays how old an invoice is, invoices do not carry a date themselves
+     * @param topN how many of the largest invoices to report
+     * @return BillingReport
+     * @throws InterruptedException if the tasks are interrupted
+     */
+    public BillingReport billingReport(ToIntFunction<Invoice> ageInDays, int topN) throws InterruptedException {
+        return new BillingAggregator(invoiceService).aggregate(userService.findAllUserIds(), ageInDays, topN);
+    }
+
     @SuppressWarnings({"DuplicatedCode", "UnusedReturnValue"})
     public UserInvoices findAllUserAndInvoicesWithPreemption(long id) throws InterruptedException, ExecutionException {
         try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.allUntil(subtask ->
@@ -139,14 +338,33 @@ public class AccountingService {
         }
     }
 
+    /**
+     * The request gets a 500 ms {@link Deadline}, and the scope takes its timeout from it.
+     * Called from inside a request that already has a shorter deadline, the shorter one wins.
+     * On timeout the subtasks still running are interrupted and their {@link CancellationToken}
+     * cancelled.
+     *
+     * @param id ID of the User
+     * @return UserInvoices
+     * @throws InterruptedException if the tasks are interrupted
+     */
     @SuppressWarnings({"DuplicatedCode", "UnusedReturnValue"})
     public UserInvoices findAllInvoicesWithTimeout(Long id) throws InterruptedException {
-        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.allSuccessfulOrThrow(),
-            config -> config.withTimeout(Duration.of(500, ChronoUnit.MILLIS)))) {
-            StructuredTaskScope.Subtask<User> user = scope.fork(() -> userService.findUser(id));
-            StructuredTaskScope.Subtask<List<Invoice>> invoices = scope.fork(() -> invoiceService.findAllInvoicesByUserLongTime(id));
-            scope.join();
-            return new UserInvoices(user.get(), invoices.get());
-        }
+        return Deadline.within(Duration.of(500, ChronoUnit.MILLIS), () -> {
+            var cancellable = CancellableJoiner.wrap(StructuredTaskScope.Joiner.allSuccessfulOrThrow());
+            var joiner = ObservedJoiner.observe("findAllInvoicesWithTimeout", cancellable);
+            try (var scope = Deadline.open(joiner)) {
+                StructuredTaskScope.Subtask<User> user =
+                    joiner.fork(scope, "UserService", cancellable.bind(() -> userService.findUser(id)));
+                StructuredTaskScope.Subtask<List<Invoice>> invoices = joiner.fork(scope, "InvoiceService",
+                    cancellable.bind(() -> invoiceService.findAllInvoicesByUserLongTime(id)));
+                try {
+                    joiner.join(scope);
+                } finally {
+                    cancellable.cancel();
+                }
+                return new UserInvoices(user.get(), invoices.get());
+            }
+        });
     }
 }
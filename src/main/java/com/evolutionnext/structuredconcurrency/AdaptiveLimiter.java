@@ -0,0 +1,76 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that adapts to the service behind it, additive increase and
+ * multiplicative decrease (AIMD). A call that fails or takes longer than
+ * {@code latencyThreshold} cuts the limit by {@code backoffRatio}. A fast success while at
+ * least half the limit is in use raises it by one. So when the service slows down the
+ * number of subtasks waiting on it shrinks, and grows back as it recovers.
+ * <p>
+ * The limit and the in-flight count are plain atomics, acquiring is a compare-and-set.
+ */
+public class AdaptiveLimiter {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, Duration latencyThreshold) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0.0 || backoffRatio >= 1.0) throw new IllegalArgumentException("backoffRatio must be in (0, 1)");
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = new AtomicInteger(initialLimit);
+    }
+
+    public int limit() {
+        return limit.get();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return true if the call may go ahead, it must then be reported with exactly one of
+     * {@link #onSuccess}, {@link #onDropped} or {@link #onIgnored}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    public void onSuccess(long latencyNanos) {
+        int wasInFlight = inFlight.getAndDecrement();
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease();
+        } else if (wasInFlight * 2 >= limit.get()) {
+            limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+        }
+    }
+
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        decrease();
+    }
+
+    public void onIgnored() {
+        inFlight.decrementAndGet();
+    }
+
+    private void decrease() {
+        limit.updateAndGet(current -> Math.max(minLimit, (int) (current * backoffRatio)));
+    }
+}
@@ -0,0 +1,45 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A materialized {@link InvoiceSummary} per user, kept up to date one invoice at a time
+ * instead of summing the whole list on every query. A query is a map lookup and a volatile
+ * read. An update replaces the user's immutable summary with a compare-and-set, so writers
+ * of different users never contend and writers of the same user retry instead of blocking,
+ * and a reader always sees count, total and latest from the same moment.
+ * <p>
+ * Every invoice comes with a sequence, e.g. its offset in an {@link InvoiceLog}, which
+ * decides the latest invoice when updates of one user arrive out of order.
+ */
+public class BalanceView {
+    private static final Balance EMPTY = new Balance(Long.MIN_VALUE, InvoiceSummary.EMPTY);
+
+    private record Balance(long sequence, InvoiceSummary summary) {
+    }
+
+    private final Map<Long, AtomicReference<Balance>> balances = new ConcurrentHashMap<>();
+
+    public void add(long userId, long sequence, Invoice invoice) {
+        AtomicReference<Balance> balance = balances.get(userId);
+        if (balance == null) balance = balances.computeIfAbsent(userId, _ -> new AtomicReference<>(EMPTY));
+        Balance current;
+        Balance next;
+        do {
+            current = balance.get();
+            boolean isLatest = sequence > current.sequence();
+            next = new Balance(isLatest ? sequence : current.sequence(), current.summary().plus(invoice, isLatest));
+        } while (!balance.compareAndSet(current, next));
+    }
+
+    public InvoiceSummary summaryOf(long userId) {
+        AtomicReference<Balance> balance = balances.get(userId);
+        return balance == null ? InvoiceSummary.EMPTY : balance.get().summary();
+    }
+
+    public int userCount() {
+        return balances.size();
+    }
+}
@@ -0,0 +1,124 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A DataLoader style coalescer. Keys requested by many threads within {@code window}
+ * are gathered into one batch and looked up with a single call to the batch function,
+ * the results are then fanned back out to every caller waiting on them. A batch is
+ * dispatched early once it holds {@code maxBatchSize} keys. Callers asking for the
+ * same key in the same window share one entry in the batch.
+ * <p>
+ * Callers block in {@link #load(Object)}, which is cheap on a virtual thread. Each batch
+ * has one virtual thread timing its window, woken and ended early when the batch fills.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BatchLoader<K, V> {
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong batches = new AtomicLong();
+    private Map<K, CompletableFuture<V>> pending = new HashMap<>();
+    // The thread timing the pending batch, guarded by lock
+    private Thread timer;
+
+    public BatchLoader(Function<Set<K>, Map<K, V>> batchFunction, Duration window, int maxBatchSize) {
+        if (maxBatchSize < 1) throw new IllegalArgumentException("maxBatchSize must be positive");
+        this.batchFunction = batchFunction;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public V load(K key) throws InterruptedException {
+        CompletableFuture<V> future;
+        Map<K, CompletableFuture<V>> full = null;
+        Thread fullTimer = null;
+        lock.lock();
+        try {
+            future = pending.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                if (pending.isEmpty()) scheduleDispatch(pending);
+                pending.put(key, future);
+                if (pending.size() >= maxBatchSize) {
+                    full = pending;
+                    pending = new HashMap<>();
+                    fullTimer = timer;
+                    timer = null;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            // The timer sees its batch is gone and ends instead of sleeping out the window
+            LockSupport.unpark(fullTimer);
+            dispatch(full);
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the number of calls made to the batch function so far
+     */
+    public long batchCount() {
+        return batches.get();
+    }
+
+    /**
+     * Called with the lock held.
+     */
+    private void scheduleDispatch(Map<K, CompletableFuture<V>> batch) {
+        long deadline = System.nanoTime() + window.toNanos();
+        timer = Thread.ofVirtual().name("batch-loader").start(() -> {
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining > 0) LockSupport.parkNanos(this, remaining);
+                lock.lock();
+                try {
+                    // Already dispatched because it filled up
+                    if (pending != batch) return;
+                    if (deadline - System.nanoTime() > 0) continue;
+                    pending = new HashMap<>();
+                    timer = null;
+                } finally {
+                    lock.unlock();
+                }
+                dispatch(batch);
+                return;
+            }
+        });
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        batches.incrementAndGet();
+        try {
+            Map<K, V> results = batchFunction.apply(batch.keySet());
+            batch.forEach((key, future) -> {
+                V value = results.get(key);
+                if (value != null) future.complete(value);
+                else future.completeExceptionally(new NoSuchElementException("No value for key " + key));
+            });
+        } catch (Throwable t) {
+            batch.values().forEach(future -> future.completeExceptionally(t));
+        }
+    }
+}
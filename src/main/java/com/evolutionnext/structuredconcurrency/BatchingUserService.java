@@ -0,0 +1,33 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+
+/**
+ * A {@link UserService} whose {@link #findUser(Long)} calls are coalesced. Every
+ * virtual thread forked by {@link AccountingService#findAllUsers(long...)} still asks for
+ * one user, but the lookups reach the store as a handful of {@link #findUsers} calls.
+ */
+public class BatchingUserService extends UserService {
+    private final BatchLoader<Long, User> loader;
+
+    public BatchingUserService(Duration window, int maxBatchSize) {
+        this.loader = new BatchLoader<>(super::findUsers, window, maxBatchSize);
+    }
+
+    public BatchingUserService() {
+        this(Duration.ofMillis(2), 256);
+    }
+
+    @Override
+    public User findUser(Long id) {
+        try {
+            return loader.load(id);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public long batchCount() {
+        return loader.batchCount();
+    }
+}
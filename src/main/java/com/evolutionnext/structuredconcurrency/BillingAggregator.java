@@ -0,0 +1,210 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Aggregates invoices across every user in two phases. Fetching is I/O bound, so it runs on
+ * virtual threads through {@link BoundedScope}, at most {@code maxInFlight} at once.
+ * Reducing is CPU bound, so it is split by a {@link RecursiveTask} over the users and runs on
+ * a {@link ForkJoinPool} sized to the cores. Each leaf folds into one {@link Accumulator} of
+ * primitives and fixed size arrays, and merging two accumulators allocates nothing. The
+ * leaves poll the caller's {@link CancellationToken} between users, so a reduce started in a
+ * subtask stops when its scope is cancelled, even though the pool threads are never
+ * interrupted.
+ * <p>
+ * Invoices carry no date, so their age is supplied by the caller as {@code ageInDays}.
+ */
+public class BillingAggregator {
+    private static final int[] AGING_LIMITS = {30, 60, 90};
+    private static final String[] AGING_LABELS = {"0-30 days", "31-60 days", "61-90 days", "over 90 days"};
+    private static final int LEAF_USERS = 256;
+
+    private final InvoiceService invoiceService;
+    private final ForkJoinPool pool;
+    private final int maxInFlight;
+
+    public BillingAggregator(InvoiceService invoiceService, ForkJoinPool pool, int maxInFlight) {
+        this.invoiceService = invoiceService;
+        this.pool = pool;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public BillingAggregator(InvoiceService invoiceService) {
+        this(invoiceService, ForkJoinPool.commonPool(), 256);
+    }
+
+    public BillingReport aggregate(long[] userIds, ToIntFunction<Invoice> ageInDays, int topN)
+        throws InterruptedException {
+        AtomicReferenceArray<List<Invoice>> invoices = new AtomicReferenceArray<>(userIds.length);
+        BoundedScope.forEach(IntStream.range(0, userIds.length).iterator(), maxInFlight,
+            index -> {
+                invoices.set(index, invoiceService.findAllInvoicesByUser(userIds[index]));
+                return index;
+            },
+            _ -> { });
+        CancellationToken token = CancellationToken.current();
+        token.throwIfCancelled();
+        Accumulator accumulator = pool.invoke(new Reduce(token, userIds, invoices, ageInDays, topN, 0, userIds.length));
+        return accumulator.toReport(userIds.length);
+    }
+
+    private static final class Reduce extends RecursiveTask<Accumulator> {
+        private final CancellationToken token;
+        private final long[] userIds;
+        private final AtomicReferenceArray<List<Invoice>> invoices;
+        private final ToIntFunction<Invoice> ageInDays;
+        private final int topN;
+        private final int from;
+        private final int to;
+
+        private Reduce(CancellationToken token, long[] userIds, AtomicReferenceArray<List<Invoice>> invoices,
+                       ToIntFunction<Invoice> ageInDays, int topN, int from, int to) {
+            this.token = token;
+            this.userIds = userIds;
+            this.invoices = invoices;
+            this.ageInDays = ageInDays;
+            this.topN = topN;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from <= LEAF_USERS) {
+                Accumulator accumulator = new Accumulator(topN);
+                for (int user = from; user < to; user++) {
+                    token.throwIfCancelled();
+                    for (Invoice invoice : invoices.get(user)) {
+                        accumulator.add(userIds[user], invoice, ageInDays.applyAsInt(invoice));
+                    }
+                }
+                return accumulator;
+            }
+            int middle = (from + to) >>> 1;
+            Reduce left = new Reduce(token, userIds, invoices, ageInDays, topN, from, middle);
+            Reduce right = new Reduce(token, userIds, invoices, ageInDays, topN, middle, to);
+            left.fork();
+            Accumulator result = right.compute();
+            return result.merge(left.join());
+        }
+    }
+
+    /**
+     * Totals, aging buckets and a bounded min-heap of the largest invoices.
+     */
+    static final class Accumulator {
+        private double total;
+        private long count;
+        private final double[] agingTotals = new double[AGING_LABELS.length];
+        private final long[] agingCounts = new long[AGING_LABELS.length];
+        private final float[] topAmounts;
+        private final long[] topUsers;
+        private final Invoice[] topInvoices;
+        private int topSize;
+
+        Accumulator(int topN) {
+            this.topAmounts = new float[topN];
+            this.topUsers = new long[topN];
+            this.topInvoices = new Invoice[topN];
+        }
+
+        void add(long userId, Invoice invoice, int ageInDays) {
+            float amount = invoice.amount();
+            total += amount;
+            count++;
+            int bucket = bucketOf(ageInDays);
+            agingTotals[bucket] += amount;
+            agingCounts[bucket]++;
+            offer(userId, invoice, amount);
+        }
+
+        Accumulator merge(Accumulator other) {
+            total += other.total;
+            count += other.count;
+            for (int i = 0; i < agingTotals.length; i++) {
+                agingTotals[i] += other.agingTotals[i];
+                agingCounts[i] += other.agingCounts[i];
+            }
+            for (int i = 0; i < other.topSize; i++) {
+                offer(other.topUsers[i], other.topInvoices[i], other.topAmounts[i]);
+            }
+            return this;
+        }
+
+        BillingReport toReport(int userCount) {
+            List<BillingReport.AgingBucket> aging = new ArrayList<>(AGING_LABELS.length);
+            for (int i = 0; i < AGING_LABELS.length; i++) {
+                aging.add(new BillingReport.AgingBucket(AGING_LABELS[i], agingCounts[i], agingTotals[i]));
+            }
+            Integer[] order = new Integer[topSize];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, (a, b) -> Float.compare(topAmounts[b], topAmounts[a]));
+            List<BillingReport.RankedInvoice> top = new ArrayList<>(topSize);
+            for (int i : order) {
+                top.add(new BillingReport.RankedInvoice(topUsers[i], topInvoices[i]));
+            }
+            return new BillingReport(total, count, userCount, List.copyOf(aging), List.copyOf(top));
+        }
+
+        private static int bucketOf(int ageInDays) {
+            for (int i = 0; i < AGING_LIMITS.length; i++) {
+                if (ageInDays <= AGING_LIMITS[i]) return i;
+            }
+            return AGING_LIMITS.length;
+        }
+
+        private void offer(long userId, Invoice invoice, float amount) {
+            if (topAmounts.length == 0) return;
+            if (topSize < topAmounts.length) {
+                set(topSize, userId, invoice, amount);
+                siftUp(topSize++);
+            } else if (amount > topAmounts[0]) {
+                set(0, userId, invoice, amount);
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (topAmounts[parent] <= topAmounts[index]) return;
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < topSize && topAmounts[left] < topAmounts[smallest]) smallest = left;
+                if (right < topSize && topAmounts[right] < topAmounts[smallest]) smallest = right;
+                if (smallest == index) return;
+                swap(smallest, index);
+                index = smallest;
+            }
+        }
+
+        private void set(int index, long userId, Invoice invoice, float amount) {
+            topAmounts[index] = amount;
+            topUsers[index] = userId;
+            topInvoices[index] = invoice;
+        }
+
+        private void swap(int a, int b) {
+            float amount = topAmounts[a];
+            long userId = topUsers[a];
+            Invoice invoice = topInvoices[a];
+            set(a, topUsers[b], topInvoices[b], topAmounts[b]);
+            set(b, userId, invoice, amount);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.List;
+
+/**
+ * Month-end totals across every user.
+ *
+ * @param total the sum of every invoice amount
+ * @param invoiceCount the number of invoices
+ * @param userCount the number of users aggregated
+ * @param aging the invoices split by age, oldest bucket last
+ * @param topInvoices the largest invoices, largest first
+ */
+public record BillingReport(double total, long invoiceCount, int userCount,
+                            List<AgingBucket> aging, List<RankedInvoice> topInvoices) {
+
+    /**
+     * @param label e.g. "31-60 days"
+     */
+    public record AgingBucket(String label, long count, double total) {
+    }
+
+    public record RankedInvoice(long userId, Invoice invoice) {
+    }
+}
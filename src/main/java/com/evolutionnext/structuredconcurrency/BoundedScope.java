@@ -0,0 +1,33 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Forks one subtask per input, but never more than {@code maxInFlight} at a time, and
+ * streams the results to a consumer as they complete. Inputs are pulled lazily from the
+ * iterator, so a million ids never turn into a million live subtasks, and the downstream
+ * service never sees more than {@code maxInFlight} concurrent requests. Under a
+ * {@link Deadline} the scope times out when it passes.
+ */
+@SuppressWarnings("preview")
+public final class BoundedScope {
+    private BoundedScope() {
+    }
+
+    public static <I, T> void forEach(Iterator<? extends I> inputs,
+                                      int maxInFlight,
+                                      Function<? super I, ? extends T> task,
+                                      Consumer<? super T> consumer) throws InterruptedException {
+        StreamingJoiner<T> joiner = new StreamingJoiner<>(maxInFlight, consumer);
+        try (var scope = Deadline.open(joiner)) {
+            while (inputs.hasNext()) {
+                if (!joiner.acquire(scope) || joiner.hasFailed() || scope.isCancelled()) break;
+                I input = inputs.next();
+                scope.fork(() -> task.apply(input));
+            }
+            scope.join();
+        }
+    }
+}
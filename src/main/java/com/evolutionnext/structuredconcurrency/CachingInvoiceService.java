@@ -0,0 +1,54 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * An {@link InvoiceService} that caches invoices per user, hand it to
+ * {@link AccountingService} in place of the plain service. Concurrent requests for
+ * the same user share one call to the underlying lookup.
+ */
+public class CachingInvoiceService extends InvoiceService {
+    private final SingleFlightCache<Long, List<Invoice>> invoicesByUser;
+    private final SingleFlightCache<Long, List<Invoice>> invoicesByUserLongTime;
+
+    public CachingInvoiceService(int maximumSize, Duration ttl) {
+        this.invoicesByUser = new SingleFlightCache<>(maximumSize, ttl);
+        this.invoicesByUserLongTime = new SingleFlightCache<>(maximumSize, ttl);
+    }
+
+    public CachingInvoiceService() {
+        this(10_000, Duration.ofMinutes(1));
+    }
+
+    @Override
+    public List<Invoice> findAllInvoicesByUser(Long id) {
+        try {
+            return invoicesByUser.get(id, super::findAllInvoicesByUser);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public List<Invoice> findAllInvoicesByUserLongTime(long id) {
+        try {
+            return invoicesByUserLongTime.get(id, super::findAllInvoicesByUserLongTime);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void invalidate(long id) {
+        invoicesByUser.invalidate(id);
+        invoicesByUserLongTime.invalidate(id);
+    }
+
+    public SingleFlightCache.Stats invoicesByUserStats() {
+        return invoicesByUser.stats();
+    }
+
+    public SingleFlightCache.Stats invoicesByUserLongTimeStats() {
+        return invoicesByUserLongTime.stats();
+    }
+}
@@ -0,0 +1,98 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.StructuredTaskScope;
+
+/**
+ * Wraps any Joiner and gives its scope a {@link CancellationToken}. The token is cancelled
+ * when the wrapped Joiner cancels the scope, e.g. on the first success of
+ * {@code anySuccessfulResultOrThrow}, and when {@link #join} returns or throws, which covers
+ * timeouts and a failed sibling. From then on every subtask still running is unwanted.
+ * <p>
+ * Use {@link #fork} and {@link #join} in place of the scope's own methods:
+ * <pre>{@code
+ * var joiner = CancellableJoiner.wrap(Joiner.<Integer>anySuccessfulResultOrThrow());
+ * try (var scope = StructuredTaskScope.open(joiner)) {
+ *     joiner.fork(scope, () -> search(left));
+ *     joiner.fork(scope, () -> search(right));
+ *     return joiner.join(scope);
+ * }
+ * }</pre>
+ * where {@code search} polls {@link CancellationToken#current()}.
+ *
+ * @param <T> the result type of the subtasks
+ * @param <R> the result type of the wrapped Joiner
+ */
+@SuppressWarnings("preview")
+public class CancellableJoiner<T, R> implements StructuredTaskScope.Joiner<T, R> {
+    private final StructuredTaskScope.Joiner<T, ? extends R> delegate;
+    private final CancellationToken token;
+
+    private CancellableJoiner(StructuredTaskScope.Joiner<T, ? extends R> delegate) {
+        this.delegate = delegate;
+        // Created in the owner thread, so a scope nested in a subtask is cancelled with its parent
+        this.token = new CancellationToken(CancellationToken.CURRENT.isBound() ? CancellationToken.CURRENT.get() : null);
+    }
+
+    public static <T, R> CancellableJoiner<T, R> wrap(StructuredTaskScope.Joiner<T, ? extends R> delegate) {
+        return new CancellableJoiner<>(delegate);
+    }
+
+    public CancellationToken token() {
+        return token;
+    }
+
+    /**
+     * Forks the task in the scope with this scope's token as {@link CancellationToken#current()}.
+     */
+    public <U extends T> StructuredTaskScope.Subtask<U> fork(StructuredTaskScope<T, ?> scope,
+                                                             Callable<? extends U> task) {
+        return scope.fork(bind(task));
+    }
+
+    /**
+     * Wraps the task to run with this scope's token as {@link CancellationToken#current()}, for
+     * forking through another wrapper, e.g. an {@code ObservedJoiner} around this one.
+     */
+    public <U> Callable<U> bind(Callable<? extends U> task) {
+        return () -> ScopedValue.where(CancellationToken.CURRENT, token).call(task::call);
+    }
+
+    /**
+     * Joins the scope and cancels the token, whatever the outcome. When another wrapper joins
+     * the scope instead, {@link #cancel()} the token once it returns.
+     */
+    public <X> X join(StructuredTaskScope<?, X> scope) throws InterruptedException {
+        try {
+            return scope.join();
+        } finally {
+            cancel();
+        }
+    }
+
+    /**
+     * Cancels the token, every subtask still running is unwanted from here on.
+     */
+    public void cancel() {
+        token.cancel();
+    }
+
+    @Override
+    public boolean onFork(StructuredTaskScope.Subtask<? extends T> subtask) {
+        boolean cancel = delegate.onFork(subtask);
+        if (cancel) token.cancel();
+        return cancel;
+    }
+
+    @Override
+    public boolean onComplete(StructuredTaskScope.Subtask<? extends T> subtask) {
+        boolean cancel = delegate.onComplete(subtask);
+        if (cancel) token.cancel();
+        return cancel;
+    }
+
+    @Override
+    public R result() throws Throwable {
+        return delegate.result();
+    }
+}
@@ -0,0 +1,65 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets CPU-bound work notice that the scope it runs in was cancelled. A scope interrupts its
+ * subtasks when it is cancelled, but a loop that never blocks never sees the interrupt, and
+ * code that swallows an {@link InterruptedException} loses it. The token is a volatile flag
+ * set by {@link CancellableJoiner} the moment its scope cancels or its owner stops waiting,
+ * so polling it costs a field read.
+ * <p>
+ * Subtasks forked through {@link CancellableJoiner#fork} see their scope's token as
+ * {@link #current()}. A token is also cancelled when any enclosing scope's token is, so work
+ * deep in nested scopes stops as soon as the request is abandoned. A token can be handed to
+ * threads that do not inherit it, e.g. a {@link java.util.concurrent.ForkJoinPool}.
+ * <pre>{@code
+ * CancellationToken token = CancellationToken.current();
+ * for (int i = 0; i < rows; i++) {
+ *     if ((i & 1023) == 0) token.throwIfCancelled();
+ *     ...
+ * }
+ * }</pre>
+ */
+@SuppressWarnings("preview")
+public final class CancellationToken {
+    static final ScopedValue<CancellationToken> CURRENT = ScopedValue.newInstance();
+    private static final CancellationToken NONE = new CancellationToken(null);
+
+    private final CancellationToken parent;
+    private volatile boolean cancelled;
+
+    CancellationToken(CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @return the token of the enclosing {@link CancellableJoiner} scope, or outside of one a
+     * token that only reports interrupts
+     */
+    public static CancellationToken current() {
+        return CURRENT.isBound() ? CURRENT.get() : NONE;
+    }
+
+    /**
+     * @return true if this token or an enclosing one was cancelled, or the current thread
+     * was interrupted
+     */
+    public boolean isCancelled() {
+        for (CancellationToken token = this; token != null; token = token.parent) {
+            if (token.cancelled) return true;
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * @throws CancellationException if {@link #isCancelled()}
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) throw new CancellationException("Scope was cancelled");
+    }
+
+    void cancel() {
+        if (this != NONE) cancelled = true;
+    }
+}
@@ -0,0 +1,18 @@
+package com.evolutionnext.structuredconcurrency;
+
+/**
+ * Tells a subtask that ended because it was cancelled from one that failed on its own. The
+ * services catch the interrupt, which clears the flag, and rethrow it wrapped in a
+ * {@link RuntimeException}, so the flag alone misses most cancellations.
+ */
+final class Cancellations {
+    private Cancellations() {
+    }
+
+    static boolean isCancellation(Throwable t) {
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException) return true;
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+}
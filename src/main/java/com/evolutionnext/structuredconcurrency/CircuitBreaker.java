@@ -0,0 +1,110 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A circuit breaker kept in a single {@link AtomicReference}, every transition is one
+ * compare-and-set so callers never block on the breaker itself.
+ * <p>
+ * The breaker opens after {@code failureThreshold} consecutive failures, where a call
+ * slower than {@code slowCallThreshold} counts as a failure too. While open every call is
+ * refused. After {@code openDuration} it lets up to {@code halfOpenProbes} calls through,
+ * one success closes it again and one failure reopens it.
+ */
+public class CircuitBreaker {
+    public enum Phase {CLOSED, OPEN, HALF_OPEN}
+
+    private record State(Phase phase, int failures, long openedAtNanos, int probes) {
+    }
+
+    private static final State CLOSED = new State(Phase.CLOSED, 0, 0, 0);
+
+    private final int failureThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final AtomicReference<State> state = new AtomicReference<>(CLOSED);
+
+    public CircuitBreaker(int failureThreshold, Duration slowCallThreshold, Duration openDuration, int halfOpenProbes) {
+        if (failureThreshold < 1) throw new IllegalArgumentException("failureThreshold must be positive");
+        if (halfOpenProbes < 1) throw new IllegalArgumentException("halfOpenProbes must be positive");
+        this.failureThreshold = failureThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    public Phase phase() {
+        return state.get().phase();
+    }
+
+    /**
+     * @return true if the call may go ahead, it must then be reported with exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            State current = state.get();
+            State next;
+            switch (current.phase()) {
+                case CLOSED -> {
+                    return true;
+                }
+                case OPEN -> {
+                    if (System.nanoTime() - current.openedAtNanos() < openNanos) return false;
+                    next = new State(Phase.HALF_OPEN, 0, current.openedAtNanos(), 1);
+                }
+                default -> {
+                    if (current.probes() >= halfOpenProbes) return false;
+                    next = new State(Phase.HALF_OPEN, 0, current.openedAtNanos(), current.probes() + 1);
+                }
+            }
+            if (state.compareAndSet(current, next)) return true;
+        }
+    }
+
+    public void onSuccess(long latencyNanos) {
+        if (latencyNanos > slowCallNanos) {
+            onFailure();
+            return;
+        }
+        while (true) {
+            State current = state.get();
+            // A success in the closed phase only writes when there is a streak to reset
+            if (current.phase() == Phase.OPEN || current == CLOSED) return;
+            if (state.compareAndSet(current, CLOSED)) return;
+        }
+    }
+
+    public void onFailure() {
+        while (true) {
+            State current = state.get();
+            State next = switch (current.phase()) {
+                case OPEN -> current;
+                case HALF_OPEN -> open();
+                case CLOSED -> current.failures() + 1 >= failureThreshold
+                    ? open()
+                    : new State(Phase.CLOSED, current.failures() + 1, 0, 0);
+            };
+            if (next == current || state.compareAndSet(current, next)) return;
+        }
+    }
+
+    /**
+     * For calls that ended without saying anything about the service, e.g. cancelled
+     * because a sibling subtask failed. Gives back a half-open probe.
+     */
+    public void onIgnored() {
+        while (true) {
+            State current = state.get();
+            if (current.phase() != Phase.HALF_OPEN || current.probes() == 0) return;
+            State next = new State(Phase.HALF_OPEN, 0, current.openedAtNanos(), current.probes() - 1);
+            if (state.compareAndSet(current, next)) return;
+        }
+    }
+
+    private static State open() {
+        return new State(Phase.OPEN, 0, System.nanoTime(), 0);
+    }
+}
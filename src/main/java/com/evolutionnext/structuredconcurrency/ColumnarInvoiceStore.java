@@ -0,0 +1,202 @@
+package com.evolutionnext.structuredconcurrency;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Flow;
+
+/**
+ * Invoices stored by column instead of as {@code List<Invoice>}. Amounts are packed in
+ * one {@code float[]} grouped by user, invoice numbers are dictionary encoded into an
+ * {@code int[]} of codes, and users are found by binary search over a sorted
+ * {@code long[]}, so a row costs 8 bytes and no object. Totals run over the amount
+ * column with the Vector API.
+ * <p>
+ * The store is immutable, build it with {@link Builder}.
+ */
+public class ColumnarInvoiceStore {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    // Lanes are flushed into a double every block, so float rounding does not build up over millions of rows
+    private static final int BLOCK = 1024;
+
+    private final long[] userIds;
+    private final int[] userStarts;
+    private final float[] amounts;
+    private final int[] numberCodes;
+    private final String[] dictionary;
+
+    private ColumnarInvoiceStore(long[] userIds, int[] userStarts, float[] amounts, int[] numberCodes,
+                                 String[] dictionary) {
+        this.userIds = userIds;
+        this.userStarts = userStarts;
+        this.amounts = amounts;
+        this.numberCodes = numberCodes;
+        this.dictionary = dictionary;
+    }
+
+    public static class Builder {
+        private long[] rowUsers = new long[1024];
+        private float[] rowAmounts = new float[1024];
+        private int[] rowCodes = new int[1024];
+        private int size;
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+
+        public Builder add(long userId, Invoice invoice) {
+            if (size == rowUsers.length) {
+                int capacity = size + (size >> 1);
+                rowUsers = Arrays.copyOf(rowUsers, capacity);
+                rowAmounts = Arrays.copyOf(rowAmounts, capacity);
+                rowCodes = Arrays.copyOf(rowCodes, capacity);
+            }
+            rowUsers[size] = userId;
+            rowAmounts[size] = invoice.amount();
+            rowCodes[size] = codes.computeIfAbsent(invoice.number(), number -> {
+                dictionary.add(number);
+                return dictionary.size() - 1;
+            });
+            size++;
+            return this;
+        }
+
+        public Builder addAll(long userId, List<Invoice> invoices) {
+            invoices.forEach(invoice -> add(userId, invoice));
+            return this;
+        }
+
+        public ColumnarInvoiceStore build() {
+            long[] sorted = Arrays.copyOf(rowUsers, size);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) sorted[distinct++] = sorted[i];
+            }
+            long[] userIds = Arrays.copyOf(sorted, distinct);
+
+            int[] userStarts = new int[distinct + 1];
+            int[] userOfRow = new int[size];
+            for (int i = 0; i < size; i++) {
+                userOfRow[i] = Arrays.binarySearch(userIds, rowUsers[i]);
+                userStarts[userOfRow[i] + 1]++;
+            }
+            for (int u = 0; u < distinct; u++) {
+                userStarts[u + 1] += userStarts[u];
+            }
+
+            // Place every row in its user's slice, keeping insertion order within a user
+            int[] cursor = Arrays.copyOf(userStarts, distinct);
+            float[] amounts = new float[size];
+            int[] numberCodes = new int[size];
+            for (int i = 0; i < size; i++) {
+                int row = cursor[userOfRow[i]]++;
+                amounts[row] = rowAmounts[i];
+                numberCodes[row] = rowCodes[i];
+            }
+            return new ColumnarInvoiceStore(userIds, userStarts, amounts, numberCodes,
+                dictionary.toArray(String[]::new));
+        }
+    }
+
+    public int size() {
+        return amounts.length;
+    }
+
+    public int userCount() {
+        return userIds.length;
+    }
+
+    public int invoiceCount(long userId) {
+        int user = Arrays.binarySearch(userIds, userId);
+        return user < 0 ? 0 : userStarts[user + 1] - userStarts[user];
+    }
+
+    /**
+     * Rebuilds the invoices of a user as objects, for callers that need a {@code List<Invoice>}.
+     */
+    public List<Invoice> findAllInvoicesByUser(long userId) {
+        int user = Arrays.binarySearch(userIds, userId);
+        if (user < 0) return List.of();
+        int from = userStarts[user];
+        int to = userStarts[user + 1];
+        Invoice[] invoices = new Invoice[to - from];
+        for (int row = from; row < to; row++) {
+            invoices[row - from] = new Invoice(dictionary[numberCodes[row]], amounts[row]);
+        }
+        return List.of(invoices);
+    }
+
+    /**
+     * The invoices of a user, built one row at a time as the subscriber asks for them.
+     */
+    public Flow.Publisher<Invoice> streamAllInvoicesByUser(long userId) {
+        return new IteratorPublisher<>(() -> {
+            int user = Arrays.binarySearch(userIds, userId);
+            if (user < 0) return Collections.emptyIterator();
+            int to = userStarts[user + 1];
+            return new Iterator<Invoice>() {
+                private int row = userStarts[user];
+
+                @Override
+                public boolean hasNext() {
+                    return row < to;
+                }
+
+                @Override
+                public Invoice next() {
+                    if (row >= to) throw new NoSuchElementException();
+                    Invoice invoice = new Invoice(dictionary[numberCodes[row]], amounts[row]);
+                    row++;
+                    return invoice;
+                }
+            };
+        });
+    }
+
+    public double totalForUser(long userId) {
+        int user = Arrays.binarySearch(userIds, userId);
+        return user < 0 ? 0.0 : sum(amounts, userStarts[user], userStarts[user + 1]);
+    }
+
+    public double total() {
+        return sum(amounts, 0, amounts.length);
+    }
+
+    /**
+     * The same total without the Vector API, as a baseline.
+     */
+    public double totalScalar() {
+        double total = 0.0;
+        for (float amount : amounts) {
+            total += amount;
+        }
+        return total;
+    }
+
+    static double sum(float[] values, int from, int to) {
+        double total = 0.0;
+        int i = from;
+        while (to - i >= SPECIES.length()) {
+            int blockEnd = Math.min(to, i + BLOCK);
+            int upperBound = i + SPECIES.loopBound(blockEnd - i);
+            FloatVector lanes = FloatVector.zero(SPECIES);
+            for (; i < upperBound; i += SPECIES.length()) {
+                lanes = lanes.add(FloatVector.fromArray(SPECIES, values, i));
+            }
+            total += lanes.reduceLanes(VectorOperators.ADD);
+            if (upperBound != blockEnd) break;
+        }
+        for (; i < to; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+}
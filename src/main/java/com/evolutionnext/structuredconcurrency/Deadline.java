@@ -0,0 +1,110 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.function.Function;
+
+/**
+ * A request deadline bound in a {@link ScopedValue}. Subtasks forked in a scope inherit the
+ * bindings of the thread that opened it, so the deadline follows the request down every
+ * nested scope without being passed around. Scopes opened with {@link #open} time out when
+ * the budget runs out, and blocking work can call {@link #check()} or {@link #sleep} to stop
+ * as soon as nobody is waiting for it anymore.
+ * <pre>{@code
+ * Deadline.within(Duration.ofMillis(500), () -> {
+ *     try (var scope = Deadline.open(Joiner.awaitAllSuccessfulOrThrow())) {
+ *         ...
+ *     }
+ * });
+ * }</pre>
+ */
+@SuppressWarnings("preview")
+public final class Deadline {
+    private static final ScopedValue<Deadline> CURRENT = ScopedValue.newInstance();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration budget) {
+        long now = System.nanoTime();
+        long nanos = budget.compareTo(Duration.ofDays(365)) > 0 ? Duration.ofDays(365).toNanos() : budget.toNanos();
+        return new Deadline(now + nanos);
+    }
+
+    public static Optional<Deadline> current() {
+        return CURRENT.isBound() ? Optional.of(CURRENT.get()) : Optional.empty();
+    }
+
+    /**
+     * Runs the operation with a deadline of {@code budget} from now. A nested call can only
+     * shorten the deadline of the enclosing one, never extend it.
+     */
+    public static <T, X extends Throwable> T within(Duration budget, ScopedValue.CallableOp<? extends T, X> op) throws X {
+        Deadline deadline = after(budget);
+        if (CURRENT.isBound() && CURRENT.get().deadlineNanos - deadline.deadlineNanos < 0) {
+            deadline = CURRENT.get();
+        }
+        return ScopedValue.where(CURRENT, deadline).call(op);
+    }
+
+    /**
+     * Opens a scope that times out when the current deadline passes, or one without a
+     * timeout when no deadline is bound.
+     *
+     * @throws DeadlineExceededException if the deadline has already passed
+     */
+    public static <T, R> StructuredTaskScope<T, R> open(StructuredTaskScope.Joiner<? super T, ? extends R> joiner) {
+        return open(joiner, Function.identity());
+    }
+
+    /**
+     * Like {@link #open(StructuredTaskScope.Joiner)}, any timeout set by {@code configFunction}
+     * is replaced by the remaining budget.
+     */
+    public static <T, R> StructuredTaskScope<T, R> open(
+        StructuredTaskScope.Joiner<? super T, ? extends R> joiner,
+        Function<StructuredTaskScope.Configuration, StructuredTaskScope.Configuration> configFunction) {
+        if (!CURRENT.isBound()) return StructuredTaskScope.open(joiner, configFunction);
+        check();
+        Duration remaining = CURRENT.get().remaining();
+        return StructuredTaskScope.open(joiner, config -> configFunction.apply(config).withTimeout(remaining));
+    }
+
+    /**
+     * @throws DeadlineExceededException if a deadline is bound and has passed
+     */
+    public static void check() {
+        if (CURRENT.isBound() && CURRENT.get().isExpired()) {
+            throw new DeadlineExceededException("Deadline exceeded");
+        }
+    }
+
+    /**
+     * Sleeps for {@code duration}, or only until the current deadline if that comes first.
+     *
+     * @throws DeadlineExceededException if the deadline passed before {@code duration} did
+     */
+    public static void sleep(Duration duration) throws InterruptedException {
+        check();
+        Duration remaining = current().map(Deadline::remaining).orElse(duration);
+        if (duration.compareTo(remaining) <= 0) {
+            Thread.sleep(duration);
+        } else {
+            Thread.sleep(remaining);
+            throw new DeadlineExceededException("Deadline exceeded after " + remaining.toMillis() + " ms of " +
+                                                duration.toMillis() + " ms");
+        }
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+}
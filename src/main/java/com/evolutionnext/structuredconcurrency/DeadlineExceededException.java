@@ -0,0 +1,10 @@
+package com.evolutionnext.structuredconcurrency;
+
+/**
+ * Thrown by work that gives up because the {@link Deadline} of its request has passed.
+ */
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,50 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How a simulated downstream service behaves: a base latency, a fraction of calls that take
+ * {@code slowLatency} instead, and a fraction of calls that fail after the base latency.
+ */
+public record DownstreamProfile(String name, Duration latency, double slowFraction, Duration slowLatency,
+                                double failureFraction) {
+
+    public static DownstreamProfile fast() {
+        return new DownstreamProfile("fast", Duration.ofMillis(2), 0.0, Duration.ZERO, 0.0);
+    }
+
+    public static DownstreamProfile slow() {
+        return new DownstreamProfile("slow", Duration.ofMillis(50), 0.1, Duration.ofMillis(500), 0.0);
+    }
+
+    public static DownstreamProfile failing() {
+        return new DownstreamProfile("failing", Duration.ofMillis(2), 0.0, Duration.ZERO, 0.2);
+    }
+
+    public static DownstreamProfile mixed() {
+        return new DownstreamProfile("mixed", Duration.ofMillis(5), 0.05, Duration.ofMillis(200), 0.05);
+    }
+
+    public static DownstreamProfile named(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "fast" -> fast();
+            case "slow" -> slow();
+            case "failing" -> failing();
+            case "mixed" -> mixed();
+            default -> throw new IllegalArgumentException("Unknown profile " + name);
+        };
+    }
+
+    /**
+     * Blocks for one call's latency and fails as often as the profile says.
+     */
+    public void call() throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Thread.sleep(random.nextDouble() < slowFraction ? slowLatency : latency);
+        if (random.nextDouble() < failureFraction) {
+            throw new IllegalStateException(name + " downstream failed");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * A response body assembled from already encoded parts. Nothing is copied, the parts are
+ * written one after the other, or in a single gathering write to a channel. The length is
+ * known up front, so the response needs no chunked encoding.
+ */
+public final class EncodedResponse {
+    private final byte[][] parts;
+    private final long length;
+
+    EncodedResponse(byte[]... parts) {
+        this.parts = parts;
+        long total = 0;
+        for (byte[] part : parts) {
+            total += part.length;
+        }
+        this.length = total;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+    }
+
+    public void writeTo(GatheringByteChannel channel) throws IOException {
+        ByteBuffer[] buffers = buffers();
+        long remaining = length;
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    /**
+     * Read-only views of the parts, for gathering writes.
+     */
+    public ByteBuffer[] buffers() {
+        ByteBuffer[] buffers = new ByteBuffer[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            buffers[i] = ByteBuffer.wrap(parts[i]).asReadOnlyBuffer();
+        }
+        return buffers;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[Math.toIntExact(length)];
+        int position = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, bytes, position, part.length);
+            position += part.length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,117 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.evolutionnext.structuredconcurrency.jfr.ObservedJoiner;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the encoded JSON of each user and of each user's invoices, so a
+ * {@code UserInvoices} response is assembled by concatenating cached bytes instead of
+ * running Jackson on every request. On a miss both parts are loaded and encoded in
+ * parallel in a structured scope, concurrent misses for the same part share one load.
+ * <p>
+ * Misses take the path of {@link AccountingService#findAllInvoicesByUserWithLoadShedding(long)}:
+ * the lookups go through the service guards of the {@link AccountingService}, the scope times
+ * out with the request {@link Deadline} and shows up in JFR like the other scopes.
+ * <p>
+ * Call the invalidation hooks when a user or their invoices change, entries otherwise
+ * expire after the TTL.
+ */
+@SuppressWarnings("preview")
+public class EncodedResponseCache {
+    private static final byte[] USER_PREFIX = "{\"user\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INVOICES_PREFIX = ",\"invoices\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "}".getBytes(StandardCharsets.UTF_8);
+
+    private final AccountingService accountingService;
+    private final SingleFlightCache<Long, byte[]> users;
+    private final SingleFlightCache<Long, byte[]> invoices;
+
+    public EncodedResponseCache(AccountingService accountingService, int maximumSize, Duration ttl) {
+        this.accountingService = accountingService;
+        this.users = new SingleFlightCache<>(maximumSize, ttl);
+        this.invoices = new SingleFlightCache<>(maximumSize, ttl);
+    }
+
+    public EncodedResponseCache(AccountingService accountingService) {
+        this(accountingService, 10_000, Duration.ofMinutes(1));
+    }
+
+    public EncodedResponseCache(UserService userService, InvoiceService invoiceService, int maximumSize, Duration ttl) {
+        this(new AccountingService(userService, invoiceService), maximumSize, ttl);
+    }
+
+    public EncodedResponseCache(UserService userService, InvoiceService invoiceService) {
+        this(new AccountingService(userService, invoiceService));
+    }
+
+    /**
+     * The same bytes as the {@code UserInvoices} JSON written by {@link AccountingHttpServer}.
+     */
+    public EncodedResponse userInvoices(long id) throws InterruptedException {
+        // Hits are served on the calling thread, a scope is only opened to load
+        byte[] cachedUser = users.getIfPresent(id);
+        byte[] cachedInvoices = invoices.getIfPresent(id);
+        if (cachedUser != null && cachedInvoices != null) {
+            return new EncodedResponse(USER_PREFIX, cachedUser, INVOICES_PREFIX, cachedInvoices, SUFFIX);
+        }
+        var joiner = ObservedJoiner.observe("userInvoices",
+            StructuredTaskScope.Joiner.<byte[]>awaitAllSuccessfulOrThrow());
+        try (var scope = Deadline.open(joiner)) {
+            Supplier<byte[]> user = cachedUser != null
+                ? () -> cachedUser
+                : joiner.fork(scope, "UserService", () -> users.get(id, this::encodeUser));
+            Supplier<byte[]> invoiceList = cachedInvoices != null
+                ? () -> cachedInvoices
+                : joiner.fork(scope, "InvoiceService", () -> invoices.get(id, this::encodeInvoices));
+            joiner.join(scope);
+            return new EncodedResponse(USER_PREFIX, user.get(), INVOICES_PREFIX, invoiceList.get(), SUFFIX);
+        }
+    }
+
+    public void invalidateUser(long id) {
+        users.invalidate(id);
+    }
+
+    public void invalidateInvoices(long id) {
+        invoices.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        users.invalidateAll();
+        invoices.invalidateAll();
+    }
+
+    public SingleFlightCache.Stats userStats() {
+        return users.stats();
+    }
+
+    public SingleFlightCache.Stats invoiceStats() {
+        return invoices.stats();
+    }
+
+    private byte[] encodeUser(Long id) {
+        User user = call(accountingService.guardedFindUser(id));
+        return AccountingJson.encode(json -> AccountingJson.writeUser(json, user));
+    }
+
+    private byte[] encodeInvoices(Long id) {
+        var invoiceList = call(accountingService.guardedFindAllInvoicesByUser(id));
+        return AccountingJson.encode(json -> AccountingJson.writeInvoices(json, invoiceList));
+    }
+
+    private static <T> T call(Callable<T> lookup) {
+        try {
+            return lookup.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // The services throw no checked exceptions, the guard only declares them
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Hedged requests: send the primary, and only if it has not answered after a delay
+ * send a backup, to another replica or the same one. Whichever finishes first wins and
+ * the other is cancelled. Choosing the delay as the observed p95 of the service means
+ * only about 5% of requests pay for a second call, while a slow replica no longer
+ * decides the tail latency. Under a {@link Deadline} neither attempt outlives it.
+ */
+@SuppressWarnings("preview")
+public final class Hedging {
+    private Hedging() {
+    }
+
+    public static <T> T hedge(Callable<? extends T> primary,
+                              Callable<? extends T> backup,
+                              Duration delay) throws InterruptedException {
+        HedgingJoiner<T> joiner = new HedgingJoiner<>();
+        try (var scope = Deadline.open(joiner)) {
+            scope.fork(primary);
+            scope.fork(() -> {
+                joiner.awaitHedge(delay);
+                return backup.call();
+            });
+            return scope.join();
+        }
+    }
+
+    public static <T> T hedge(Callable<? extends T> request, Duration delay) throws InterruptedException {
+        return hedge(request, request, delay);
+    }
+
+    /**
+     * Hedges after the p95 observed by the tracker, and records the latency of every attempt
+     * so the delay follows the service. A slow attempt is the one that gets cancelled, so an
+     * attempt cancelled after running at least the delay is recorded at the delay, dropping it
+     * would lower the p95 with every hedge. Recording it any higher would raise the p95 with
+     * every hedge instead. A loser cancelled before the delay says nothing about the service
+     * and is dropped, a failure is recorded at the time it took.
+     */
+    public static <T> T hedge(Callable<? extends T> request, LatencyTracker tracker) throws InterruptedException {
+        Duration delay = tracker.percentile(0.95);
+        long delayNanos = delay.toNanos();
+        Callable<T> timed = () -> {
+            long start = System.nanoTime();
+            try {
+                T result = request.call();
+                tracker.recordNanos(System.nanoTime() - start);
+                return result;
+            } catch (Throwable e) {
+                long elapsed = System.nanoTime() - start;
+                if (!Cancellations.isCancellation(e)) {
+                    tracker.recordNanos(elapsed);
+                } else if (elapsed >= delayNanos) {
+                    tracker.recordNanos(delayNanos);
+                }
+                throw e;
+            }
+        };
+        return hedge(timed, timed, delay);
+    }
+}
@@ -0,0 +1,74 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A Joiner for a primary request and its hedge. The first subtask forked is the primary.
+ * The scope is cancelled as soon as any subtask succeeds, which interrupts the loser,
+ * including a hedge that is still waiting for its delay. If the primary fails the hedge
+ * is released right away instead of waiting out its delay, see {@link #awaitHedge}.
+ * <p>
+ * If every subtask fails, {@link #result()} throws the exception of the first failure.
+ *
+ * @param <T> the result type
+ */
+@SuppressWarnings("preview")
+public class HedgingJoiner<T> implements StructuredTaskScope.Joiner<T, T> {
+    private final CountDownLatch primaryFailed = new CountDownLatch(1);
+    private final AtomicReference<StructuredTaskScope.Subtask<? extends T>> winner = new AtomicReference<>();
+    private final AtomicReference<Throwable> firstException = new AtomicReference<>();
+    private volatile StructuredTaskScope.Subtask<? extends T> primary;
+
+    @Override
+    public boolean onFork(StructuredTaskScope.Subtask<? extends T> subtask) {
+        if (primary == null) primary = subtask;
+        return false;
+    }
+
+    @Override
+    public boolean onComplete(StructuredTaskScope.Subtask<? extends T> subtask) {
+        switch (subtask.state()) {
+            case SUCCESS -> {
+                return winner.compareAndSet(null, subtask);
+            }
+            case FAILED -> {
+                firstException.compareAndSet(null, subtask.exception());
+                if (subtask == primary) primaryFailed.countDown();
+            }
+            case UNAVAILABLE -> { }
+        }
+        return false;
+    }
+
+    /**
+     * Called from the hedge subtask, returns once the delay has passed or the primary
+     * has failed, whichever comes first.
+     *
+     * @param delay how long to give the primary before hedging
+     * @throws InterruptedException if the scope was cancelled while waiting
+     */
+    public void awaitHedge(Duration delay) throws InterruptedException {
+        //noinspection ResultOfMethodCallIgnored
+        primaryFailed.await(delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return true if the hedge, and not the primary, produced the result
+     */
+    public boolean hedgeWon() {
+        StructuredTaskScope.Subtask<? extends T> w = winner.get();
+        return w != null && w != primary;
+    }
+
+    @Override
+    public T result() throws Throwable {
+        StructuredTaskScope.Subtask<? extends T> w = winner.get();
+        if (w != null) return w.get();
+        Throwable exception = firstException.get();
+        throw exception != null ? exception : new IllegalStateException("No subtask completed");
+    }
+}
@@ -0,0 +1,357 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+/**
+ * A durable, append-only log of invoices. Any number of virtual threads may
+ * {@link #append} at once, each blocks until its invoice is on disk. A single committer
+ * thread gathers the appends that arrive within {@code window}, up to {@code maxBatch}, writes
+ * them in one write and makes them durable with one {@link FileChannel#force} for the whole
+ * batch (group commit), so the cost of the sync is shared by every writer in the batch.
+ * <p>
+ * Committed records are indexed by user, an offset list per user, so
+ * {@link #findAllInvoicesByUser} reads only that user's records, and summarized in a
+ * {@link BalanceView}, so {@link #summarizeInvoicesByUser} reads none. Opening an existing log
+ * rebuilds both and cuts off a torn record left by a crash.
+ * <p>
+ * A batch that fails to write is cut off the file again before its appenders are told. A
+ * failed {@link FileChannel#force} cannot be retried safely, so it fails the log and every
+ * later append is rejected.
+ * <p>
+ * Each record is {@code length:int crc32c:int userId:long amount:float numberLength:short number:utf8}.
+ */
+public class InvoiceLog implements AutoCloseable {
+    private static final int HEADER_SIZE = 8;
+    private static final int FIXED_PAYLOAD_SIZE = 8 + 4 + 2;
+    private static final Pending CLOSE = new Pending(0, null, null, null);
+
+    private record Pending(long userId, Invoice invoice, ByteBuffer record, CompletableFuture<Long> offset) {
+    }
+
+    /**
+     * Offsets of one user's records. Only the committer adds, readers take a snapshot
+     * without locking: the element is written before the volatile size that publishes it.
+     */
+    private static final class OffsetList {
+        private volatile long[] offsets = new long[4];
+        private volatile int size;
+
+        private void add(long offset) {
+            long[] current = offsets;
+            int n = size;
+            if (n == current.length) {
+                current = Arrays.copyOf(current, n * 2);
+                offsets = current;
+            }
+            current[n] = offset;
+            size = n + 1;
+        }
+
+        private long[] snapshot() {
+            int n = size;
+            return Arrays.copyOf(offsets, n);
+        }
+    }
+
+    private final FileChannel channel;
+    private final long windowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Map<Long, OffsetList> index = new ConcurrentHashMap<>();
+    private final BalanceView balances = new BalanceView();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder appends = new LongAdder();
+    private final Thread committer;
+    private volatile long size;
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private InvoiceLog(FileChannel channel, Duration window, int maxBatch) throws IOException {
+        this.channel = channel;
+        this.windowNanos = window.toNanos();
+        this.maxBatch = maxBatch;
+        recover();
+        this.committer = Thread.ofPlatform().name("invoice-log-committer").daemon().start(this::commitLoop);
+    }
+
+    /**
+     * @param window how long the committer waits for more appends after the first of a batch,
+     *               zero commits whatever queued up during the previous force
+     * @param maxBatch the most appends committed together
+     */
+    public static InvoiceLog open(Path path, Duration window, int maxBatch) throws IOException {
+        if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be positive");
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new InvoiceLog(channel, window, maxBatch);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static InvoiceLog open(Path path) throws IOException {
+        return open(path, Duration.ZERO, 4096);
+    }
+
+    static InvoiceLog open(FileChannel channel, Duration window, int maxBatch) throws IOException {
+        if (maxBatch < 1) throw new IllegalArgumentException("maxBatch must be positive");
+        return new InvoiceLog(channel, window, maxBatch);
+    }
+
+    /**
+     * Appends the invoice and returns once it is durable.
+     *
+     * @return the offset of the record in the log
+     * @throws UncheckedIOException if the batch could not be written, or an earlier one could
+     *                              not be forced and the log has failed
+     */
+    public long append(long userId, Invoice invoice) throws InterruptedException {
+        if (closed) throw new IllegalStateException("Log is closed");
+        IOException failed = failure;
+        if (failed != null) throw new UncheckedIOException("Log has failed", failed);
+        // Encoded on the caller's thread, the committer only copies and writes
+        Pending pending = new Pending(userId, invoice, encode(userId, invoice), new CompletableFuture<>());
+        queue.add(pending);
+        if (closed && queue.remove(pending)) throw new IllegalStateException("Log is closed");
+        try {
+            return pending.offset().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw new UncheckedIOException(io);
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public List<Invoice> findAllInvoicesByUser(long userId) {
+        OffsetList offsets = index.get(userId);
+        if (offsets == null) return List.of();
+        List<Invoice> invoices = new ArrayList<>();
+        try {
+            for (long offset : offsets.snapshot()) {
+                invoices.add(read(offset));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return invoices;
+    }
+
+    /**
+     * The count, total and latest of the user's committed invoices, without reading the log.
+     */
+    public InvoiceSummary summarizeInvoicesByUser(long userId) {
+        return balances.summaryOf(userId);
+    }
+
+    /**
+     * @return the number of bytes committed
+     */
+    public long size() {
+        return size;
+    }
+
+    public long appendCount() {
+        return appends.sum();
+    }
+
+    /**
+     * @return the number of group commits, each one {@link FileChannel#force} call
+     */
+    public long commitCount() {
+        return commits.sum();
+    }
+
+    private void commitLoop() {
+        List<Pending> batch = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                Pending first = queue.take();
+                if (first == CLOSE) break;
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    if (next == CLOSE) {
+                        closing = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                closing = true;
+            }
+            if (!batch.isEmpty()) commit(batch);
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        IOException failed = failure;
+        if (failed != null) {
+            batch.forEach(pending -> pending.offset().completeExceptionally(failed));
+            return;
+        }
+        int total = 0;
+        for (Pending pending : batch) {
+            total += pending.record().remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        long[] offsets = new long[batch.size()];
+        long start = size;
+        for (int i = 0; i < batch.size(); i++) {
+            offsets[i] = start + buffer.position();
+            buffer.put(batch.get(i).record());
+        }
+        buffer.flip();
+        boolean written = false;
+        try {
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            written = true;
+            channel.force(false);
+        } catch (IOException e) {
+            abort(batch, start, written, e);
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            index.computeIfAbsent(pending.userId(), _ -> new OffsetList()).add(offsets[i]);
+            balances.add(pending.userId(), offsets[i], pending.invoice());
+        }
+        size = start + total;
+        commits.increment();
+        appends.add(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).offset().complete(offsets[i]);
+        }
+    }
+
+    /**
+     * Cuts the failed batch off the file. Left in place, a shorter next batch could end on a
+     * record boundary inside it and {@link #recover} would bring its remaining records back.
+     */
+    private void abort(List<Pending> batch, long start, boolean forceFailed, IOException e) {
+        boolean failed = forceFailed;
+        try {
+            channel.truncate(start);
+        } catch (IOException truncateFailure) {
+            e.addSuppressed(truncateFailure);
+            failed = true;
+        }
+        // What a failed fsync left on disk is unknown, retrying it may report success for lost pages
+        if (failed) failure = e;
+        batch.forEach(pending -> pending.offset().completeExceptionally(e));
+    }
+
+    private static ByteBuffer encode(long userId, Invoice invoice) {
+        byte[] number = invoice.number().getBytes(StandardCharsets.UTF_8);
+        if (number.length > Short.MAX_VALUE) throw new IllegalArgumentException("Invoice number is too long");
+        int payloadLength = FIXED_PAYLOAD_SIZE + number.length;
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payloadLength);
+        record.putInt(payloadLength).putInt(0)
+            .putLong(userId).putFloat(invoice.amount()).putShort((short) number.length).put(number);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), HEADER_SIZE, payloadLength);
+        record.putInt(4, (int) crc.getValue());
+        return record.flip();
+    }
+
+    private Invoice read(long offset) throws IOException {
+        ByteBuffer header = readFully(offset, HEADER_SIZE);
+        ByteBuffer payload = readFully(offset + HEADER_SIZE, header.getInt());
+        payload.getLong();
+        return decode(payload);
+    }
+
+    private static Invoice decode(ByteBuffer payload) {
+        float amount = payload.getFloat();
+        byte[] number = new byte[payload.getShort()];
+        payload.get(number);
+        return new Invoice(new String(number, StandardCharsets.UTF_8), amount);
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of log at " + position);
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Indexes and summarizes every intact record and truncates the log after the last one.
+     */
+    private void recover() throws IOException {
+        long fileSize = channel.size();
+        long position = 0;
+        CRC32C crc = new CRC32C();
+        while (position + HEADER_SIZE <= fileSize) {
+            ByteBuffer header = readFully(position, HEADER_SIZE);
+            int length = header.getInt();
+            int expectedCrc = header.getInt();
+            if (length < FIXED_PAYLOAD_SIZE || position + HEADER_SIZE + length > fileSize) break;
+            ByteBuffer payload = readFully(position + HEADER_SIZE, length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != expectedCrc) break;
+            long userId = payload.getLong();
+            index.computeIfAbsent(userId, _ -> new OffsetList()).add(position);
+            balances.add(userId, position, decode(payload));
+            position += HEADER_SIZE + length;
+        }
+        if (position < fileSize) {
+            channel.truncate(position);
+            channel.force(true);
+        }
+        size = position;
+    }
+
+    /**
+     * Commits everything appended so far and closes the file. Appends racing with close
+     * fail with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        queue.add(CLOSE);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Pending late;
+        while ((late = queue.poll()) != null) {
+            if (late != CLOSE) late.offset().completeExceptionally(new IllegalStateException("Log is closed"));
+        }
+        channel.close();
+    }
+}
@@ -1,10 +1,13 @@
 package com.evolutionnext.structuredconcurrency;
 
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+
 import java.util.List;
+import java.util.concurrent.Flow;
 
 public class InvoiceService {
     public List<Invoice> findAllInvoicesByUser(Long id) {
-        System.out.println("findAllInvoicesByUser: " + Thread.currentThread());
+        AsyncLogSink.stdout().println("findAllInvoicesByUser: " + Thread.currentThread());
         return List.of(
                 new Invoice("402", 1120.00F),
                 new Invoice("1402", 1220.00F),
@@ -12,8 +15,25 @@ public class InvoiceService {
         );
     }
 
+    /**
+     * Streaming variant of {@link #findAllInvoicesByUser(Long)}, invoices are produced as the
+     * subscriber requests them. Services with large invoice histories override this to page
+     * through their store instead of building the whole list.
+     */
+    public Flow.Publisher<Invoice> streamAllInvoicesByUser(long id) {
+        return new IteratorPublisher<>(() -> findAllInvoicesByUser(id).iterator());
+    }
+
+    /**
+     * The count, total and latest of the user's invoices. This fetches and sums the whole list,
+     * services that keep a {@link BalanceView} override it to answer from the view.
+     */
+    public InvoiceSummary summarizeInvoicesByUser(long id) {
+        return InvoiceSummary.of(findAllInvoicesByUser(id));
+    }
+
     public List<Invoice> findAllInvoicesByUserLongTime(long id) {
-        System.out.println("findAllInvoicesByUserLongTime" + Thread.currentThread());
+        AsyncLogSink.stdout().println("findAllInvoicesByUserLongTime" + Thread.currentThread());
         try {
             Thread.sleep(3000);
             return List.of(
@@ -21,7 +41,7 @@ public class InvoiceService {
                     new Invoice("1402", 1220.00F),
                     new Invoice("671", 1220.00F));
         } catch (InterruptedException e) {
-            System.out.println("This thread was interrupted");
+            AsyncLogSink.stdout().println("This thread was interrupted");
             throw new RuntimeException(e);
         }
     }
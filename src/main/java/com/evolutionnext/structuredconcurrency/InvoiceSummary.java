@@ -0,0 +1,32 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.List;
+
+/**
+ * What a dashboard needs to know about a user's invoices without the invoices themselves.
+ *
+ * @param count  the number of invoices
+ * @param total  the sum of their amounts
+ * @param latest the most recent invoice, null when there are none
+ */
+public record InvoiceSummary(long count, double total, Invoice latest) {
+    public static final InvoiceSummary EMPTY = new InvoiceSummary(0, 0.0, null);
+
+    /**
+     * Summarizes a list in one pass, the last invoice of the list is the latest.
+     */
+    public static InvoiceSummary of(List<Invoice> invoices) {
+        InvoiceSummary summary = EMPTY;
+        for (Invoice invoice : invoices) {
+            summary = summary.plus(invoice, true);
+        }
+        return summary;
+    }
+
+    /**
+     * @param isLatest whether the invoice is newer than {@link #latest}
+     */
+    InvoiceSummary plus(Invoice invoice, boolean isLatest) {
+        return new InvoiceSummary(count + 1, total + invoice.amount(), isLatest ? invoice : latest);
+    }
+}
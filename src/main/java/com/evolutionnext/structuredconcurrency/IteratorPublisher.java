@@ -0,0 +1,129 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A cold {@link Flow.Publisher} over an iterator, every subscriber gets a fresh iterator
+ * from the source. Elements are pulled only as the subscriber requests them and are emitted
+ * on the thread that calls {@link Flow.Subscription#request(long)}, so a subscriber that
+ * requests a few at a time holds only a few in memory, however large the source is.
+ * Blocking in the iterator is fine on a virtual thread.
+ */
+public class IteratorPublisher<T> implements Flow.Publisher<T> {
+    private static final Flow.Subscription EMPTY = new Flow.Subscription() {
+        @Override
+        public void request(long n) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    private final Supplier<? extends Iterator<? extends T>> source;
+
+    public IteratorPublisher(Supplier<? extends Iterator<? extends T>> source) {
+        this.source = Objects.requireNonNull(source);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber);
+        Iterator<? extends T> iterator;
+        try {
+            iterator = source.get();
+            if (!iterator.hasNext()) {
+                subscriber.onSubscribe(EMPTY);
+                subscriber.onComplete();
+                return;
+            }
+        } catch (Throwable t) {
+            subscriber.onSubscribe(EMPTY);
+            subscriber.onError(t);
+            return;
+        }
+        subscriber.onSubscribe(new IteratorSubscription<>(subscriber, iterator));
+    }
+
+    private static final class IteratorSubscription<T> implements Flow.Subscription {
+        private final Flow.Subscriber<? super T> subscriber;
+        private final Iterator<? extends T> iterator;
+        private final AtomicLong requested = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+
+        private IteratorSubscription(Flow.Subscriber<? super T> subscriber, Iterator<? extends T> iterator) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0 && error == null) {
+                // Delivered by the draining thread, a signal from here could overlap its onNext
+                error = new IllegalArgumentException("Request must be positive, was " + n);
+            }
+            // A bad request adds one demand so that the error is drained like an element
+            long add = n <= 0 ? 1 : n;
+            // Whoever takes demand up from zero drains, re-entrant calls from onNext only add demand
+            long previous = requested.getAndUpdate(current -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            if (previous == 0) drain(add);
+        }
+
+        private void drain(long demand) {
+            long emitted = 0;
+            while (true) {
+                while (emitted != demand) {
+                    if (cancelled) return;
+                    if (error != null) {
+                        fail(error);
+                        return;
+                    }
+                    T next;
+                    try {
+                        next = Objects.requireNonNull(iterator.next(), "Iterator returned null");
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    subscriber.onNext(next);
+                    if (cancelled) return;
+                    boolean hasNext;
+                    try {
+                        hasNext = iterator.hasNext();
+                    } catch (Throwable t) {
+                        fail(t);
+                        return;
+                    }
+                    if (!hasNext) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                    emitted++;
+                }
+                if (demand == Long.MAX_VALUE) {
+                    emitted = 0;
+                    continue;
+                }
+                demand = requested.addAndGet(-emitted);
+                if (demand == 0) return;
+                emitted = 0;
+            }
+        }
+
+        private void fail(Throwable t) {
+            cancelled = true;
+            subscriber.onError(t);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, log-linear latency histogram in nanoseconds. Every power of two is split
+ * into 8 linear sub-buckets, so any recorded value is reported within 12.5% of its true
+ * value, in a fixed 488 slot array whatever the range. Recording is a couple of shifts
+ * and one atomic increment, so it can be called from every virtual thread.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public record Summary(long count, Duration p50, Duration p90, Duration p99, Duration p999, Duration max) {
+    }
+
+    public void record(Duration latency) {
+        recordNanos(latency.toNanos());
+    }
+
+    public void recordNanos(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        total.increment();
+        max.accumulate(value);
+    }
+
+    /**
+     * Records {@code count} occurrences of the same value at once.
+     */
+    public void recordNanos(long nanos, long count) {
+        long value = Math.max(0, nanos);
+        counts.addAndGet(indexOf(value), count);
+        total.add(count);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public Duration max() {
+        return Duration.ofNanos(max.get());
+    }
+
+    /**
+     * @param percentile between 0.0 and 1.0, e.g. 0.99
+     * @return the upper bound of the bucket holding the given percentile, or zero if empty
+     */
+    public Duration percentile(double percentile) {
+        if (percentile < 0.0 || percentile > 1.0) throw new IllegalArgumentException("percentile must be in [0, 1]");
+        long count = count();
+        if (count == 0) return Duration.ZERO;
+        long rank = Math.max(1, (long) Math.ceil(percentile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Duration.ofNanos(Math.min(upperBoundOf(i), max.get()));
+        }
+        return max();
+    }
+
+    public Summary summary() {
+        return new Summary(count(), percentile(0.5), percentile(0.9), percentile(0.99), percentile(0.999), max());
+    }
+
+    /**
+     * Adds the counts of another histogram into this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) counts.addAndGet(i, c);
+        }
+        total.add(other.total.sum());
+        max.accumulate(other.max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the most recent latencies of a service in a ring buffer so that a percentile,
+ * like the p95 used as a hedging delay, can be read at any time. Until the first sample
+ * is recorded, percentiles return the fallback.
+ */
+public class LatencyTracker {
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+    private final Duration fallback;
+
+    public LatencyTracker(int capacity, Duration fallback) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.samples = new AtomicLongArray(capacity);
+        this.fallback = fallback;
+    }
+
+    public void record(Duration latency) {
+        recordNanos(latency.toNanos());
+    }
+
+    public void recordNanos(long nanos) {
+        long index = count.getAndIncrement();
+        samples.set((int) (index % samples.length()), nanos);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @param percentile between 0.0 and 1.0, e.g. 0.95
+     * @return the latency at the given percentile over the retained samples
+     */
+    public Duration percentile(double percentile) {
+        if (percentile < 0.0 || percentile > 1.0) throw new IllegalArgumentException("percentile must be in [0, 1]");
+        int size = (int) Math.min(count.get(), samples.length());
+        if (size == 0) return fallback;
+        long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = Math.max(0, (int) Math.ceil(percentile * size) - 1);
+        return Duration.ofNanos(sorted[index]);
+    }
+}
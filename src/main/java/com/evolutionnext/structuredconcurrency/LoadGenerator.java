@@ -0,0 +1,236 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.LongStream;
+
+/**
+ * An open-loop load generator for {@link AccountingService}. Requests are started on a fixed
+ * schedule, one every {@code 1 / rate} seconds, whether or not earlier ones have finished,
+ * as real users would. Each request calls {@link AccountingService#findAllUsers(long...)}
+ * with {@code forkWidth} ids, so it forks that many subtasks against a {@link UserService}
+ * that behaves like a {@link DownstreamProfile}.
+ * <p>
+ * Response time is measured from when a request was <em>scheduled</em> to start, not from
+ * when it actually started. When the generator itself falls behind, e.g. because every
+ * carrier thread is busy, the wait counts against the latency instead of silently dropping
+ * out of the measurement (coordinated omission). Service time, from the actual start, is
+ * reported next to it, and the gap between the two shows the queueing.
+ * <p>
+ * The carrier parallelism is fixed when the JVM starts, so {@link #main} sweeps it by
+ * running one child JVM per value with {@code -Djdk.virtualThreadScheduler.parallelism},
+ * and sweeps fork widths and profiles inside each child:
+ * <pre>
+ * LoadGenerator --rate 2000 --seconds 10 --parallelism 1,2,4,8 --widths 1,4,16 --profiles fast,slow,failing,mixed
+ * </pre>
+ * The report's peak in-flight requests size the carrier pool and request queue, and the
+ * peak in-flight downstream calls size the downstream connection limit.
+ */
+@SuppressWarnings("preview")
+public class LoadGenerator {
+    private static final String RESULT_PREFIX = "RESULT ";
+
+    public record Config(int rate, Duration duration, int forkWidth, DownstreamProfile profile) {
+        public Config {
+            if (rate < 1) throw new IllegalArgumentException("rate must be positive");
+            // One request per nanosecond at most, the schedule's interval is a whole number of nanos
+            if (rate > 1_000_000_000) throw new IllegalArgumentException("rate must be at most 1000000000 per second");
+            if (forkWidth < 1) throw new IllegalArgumentException("forkWidth must be positive");
+        }
+    }
+
+    /**
+     * @param dispatchTime how long it took to start every request, when the generator keeps
+     *                     up this is the configured duration
+     */
+    public record Result(Config config, int parallelism, long sent, long errors, Duration dispatchTime,
+                         LatencyHistogram.Summary responseTime, LatencyHistogram.Summary serviceTime,
+                         int peakInFlight, int peakDownstreamInFlight) {
+        public double achievedRate() {
+            return sent / (dispatchTime.toNanos() / 1_000_000_000.0);
+        }
+    }
+
+    /**
+     * A {@link UserService} that answers every id after the profile's latency, counting
+     * how many calls are in flight.
+     */
+    private static final class SimulatedUserService extends UserService {
+        private final DownstreamProfile profile;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAccumulator peakInFlight = new LongAccumulator(Math::max, 0);
+
+        private SimulatedUserService(DownstreamProfile profile) {
+            this.profile = profile;
+        }
+
+        @Override
+        public User findUser(Long id) {
+            peakInFlight.accumulate(inFlight.incrementAndGet());
+            try {
+                profile.call();
+                return new User("User", String.valueOf(id));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    public static Result run(Config config) throws InterruptedException {
+        SimulatedUserService userService = new SimulatedUserService(config.profile());
+        AccountingService accountingService = new AccountingService(userService, new InvoiceService());
+        long[] ids = LongStream.rangeClosed(1, config.forkWidth()).toArray();
+
+        LatencyHistogram responseTime = new LatencyHistogram();
+        LatencyHistogram serviceTime = new LatencyHistogram();
+        LongAdder errors = new LongAdder();
+        AtomicInteger inFlight = new AtomicInteger();
+        LongAccumulator peakInFlight = new LongAccumulator(Math::max, 0);
+
+        long interval = 1_000_000_000L / config.rate();
+        long start = System.nanoTime();
+        long end = start + config.duration().toNanos();
+        long sent = 0;
+        long dispatched;
+        try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll())) {
+            for (long intended = start; intended < end; intended += interval) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                long scheduled = intended;
+                sent++;
+                scope.fork(() -> {
+                    long started = System.nanoTime();
+                    peakInFlight.accumulate(inFlight.incrementAndGet());
+                    try {
+                        accountingService.findAllUsers(ids);
+                    } catch (RuntimeException | ExecutionException e) {
+                        errors.increment();
+                    } finally {
+                        inFlight.decrementAndGet();
+                        long finished = System.nanoTime();
+                        responseTime.recordNanos(finished - scheduled);
+                        serviceTime.recordNanos(finished - started);
+                    }
+                    return null;
+                });
+            }
+            dispatched = System.nanoTime() - start;
+            scope.join();
+        }
+        return new Result(config, carrierParallelism(), sent, errors.sum(), Duration.ofNanos(dispatched),
+            responseTime.summary(), serviceTime.summary(), (int) peakInFlight.get(),
+            (int) userService.peakInFlight.get());
+    }
+
+    public static int carrierParallelism() {
+        return Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parse(args);
+        int rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("seconds", "10")));
+        int[] widths = Arrays.stream(options.getOrDefault("widths", "1,4,16").split(","))
+            .mapToInt(Integer::parseInt).toArray();
+        String[] profiles = options.getOrDefault("profiles", "fast,slow,failing,mixed").split(",");
+
+        if (options.containsKey("child")) {
+            for (String profile : profiles) {
+                for (int width : widths) {
+                    Result result = run(new Config(rate, duration, width, DownstreamProfile.named(profile)));
+                    // Read by the parent process, so printed directly rather than through the async sink
+                    System.out.println(RESULT_PREFIX + format(result));
+                }
+            }
+            return;
+        }
+
+        AsyncLogSink.stdout().println(header());
+        String parallelisms = options.getOrDefault("parallelism", String.valueOf(carrierParallelism()));
+        for (String parallelism : parallelisms.split(",")) {
+            for (String line : runChild(Integer.parseInt(parallelism), args)) {
+                AsyncLogSink.stdout().println(line);
+            }
+        }
+    }
+
+    private static List<String> runChild(int parallelism, String[] args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+            .filter(argument -> !argument.startsWith("-Djdk.virtualThreadScheduler.parallelism"))
+            .toList());
+        command.add("-Djdk.virtualThreadScheduler.parallelism=" + parallelism);
+        command.add("-Djdk.virtualThreadScheduler.maxPoolSize=" + Math.max(256, parallelism));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(LoadGenerator.class.getName());
+        command.addAll(Arrays.asList(args));
+        command.add("--child");
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> results = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) results.add(line.substring(RESULT_PREFIX.length()));
+            }
+        }
+        if (process.waitFor() != 0) throw new IllegalStateException("Load run with parallelism " + parallelism + " failed");
+        return results;
+    }
+
+    static String header() {
+        return String.format("%11s %8s %5s %7s %8s %6s %9s %9s %9s %9s %9s %8s %10s",
+            "parallelism", "profile", "width", "rate", "achieved", "errors",
+            "resp p50", "resp p99", "resp p999", "resp max", "svc p99", "inflight", "downstream");
+    }
+
+    static String format(Result result) {
+        return String.format("%11d %8s %5d %7d %8.0f %6d %9s %9s %9s %9s %9s %8d %10d",
+            result.parallelism(), result.config().profile().name(), result.config().forkWidth(),
+            result.config().rate(), result.achievedRate(), result.errors(),
+            millis(result.responseTime().p50()), millis(result.responseTime().p99()),
+            millis(result.responseTime().p999()), millis(result.responseTime().max()),
+            millis(result.serviceTime().p99()), result.peakInFlight(), result.peakDownstreamInFlight());
+    }
+
+    private static String millis(Duration duration) {
+        return String.format("%.1fms", duration.toNanos() / 1_000_000.0);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            String name = args[i].substring(2);
+            if (name.equals("child")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,32 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.List;
+
+/**
+ * An {@link InvoiceService} whose invoices live in an {@link InvoiceLog}, the write path the
+ * plain service does not have.
+ */
+public class LoggedInvoiceService extends InvoiceService {
+    private final InvoiceLog log;
+
+    public LoggedInvoiceService(InvoiceLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Returns once the invoice is durable.
+     */
+    public void addInvoice(long userId, Invoice invoice) throws InterruptedException {
+        log.append(userId, invoice);
+    }
+
+    @Override
+    public List<Invoice> findAllInvoicesByUser(Long id) {
+        return log.findAllInvoicesByUser(id);
+    }
+
+    @Override
+    public InvoiceSummary summarizeInvoicesByUser(long id) {
+        return log.summarizeInvoicesByUser(id);
+    }
+}
@@ -0,0 +1,54 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link UserService} answered from a {@link MappedUserStore}. Lookups by primitive id
+ * neither box nor lock, so it can sit behind {@link AccountingService} fan-outs of millions
+ * of virtual threads.
+ */
+public class MappedUserService extends UserService {
+    private final MappedUserStore store;
+
+    public MappedUserService(MappedUserStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public User findUser(Long id) {
+        return findUser(id.longValue());
+    }
+
+    @Override
+    public User findUser(long id) {
+        User user = store.findUser(id);
+        if (user == null) throw new NoSuchElementException("No user with id " + id);
+        return user;
+    }
+
+    @Override
+    protected User lookup(long id) {
+        return store.findUser(id);
+    }
+
+    @Override
+    public Map<Long, User> findUsers(Collection<Long> ids) {
+        Map<Long, User> result = HashMap.newHashMap(ids.size());
+        for (Long id : ids) {
+            User user = store.findUser(id);
+            if (user != null) result.put(id, user);
+        }
+        return result;
+    }
+
+    @Override
+    public long[] findAllUserIds() {
+        long[] ids = store.ids();
+        Arrays.sort(ids);
+        return ids;
+    }
+}
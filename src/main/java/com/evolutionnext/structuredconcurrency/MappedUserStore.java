@@ -0,0 +1,191 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * A persistent, read-only user store in a memory-mapped file, read through the FFM
+ * {@link MemorySegment} API. Opening the store maps the file and reads a 64 byte header,
+ * nothing is parsed or copied onto the heap, so millions of users are available in
+ * milliseconds and cause no GC pressure. Lookups go through an open-addressing index of
+ * primitive {@code long} keys to record offsets, the file is immutable once written, so
+ * reads take no locks.
+ * <p>
+ * Layout, little endian:
+ * <pre>
+ * header  magic:int version:int count:long capacity:long indexOffset:long dataOffset:long dataSize:long (padded to 64)
+ * index   capacity slots of key:long recordOffset:long, a recordOffset of 0 marks an empty slot
+ * data    per user firstNameLength:int firstName:utf8 lastNameLength:int lastName:utf8
+ * </pre>
+ */
+public class MappedUserStore implements AutoCloseable {
+    private static final int MAGIC = 0x55534552; // "USER"
+    private static final int VERSION = 1;
+    private static final long HEADER_SIZE = 64;
+    private static final long SLOT_SIZE = 16;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final Arena arena;
+    private final MemorySegment segment;
+    private final long count;
+    private final long mask;
+    private final long indexOffset;
+
+    private MappedUserStore(Arena arena, MemorySegment segment) {
+        this.arena = arena;
+        this.segment = segment;
+        if (segment.get(INT, 0) != MAGIC) throw new IllegalArgumentException("Not a user store");
+        if (segment.get(INT, 4) != VERSION) throw new IllegalArgumentException("Unsupported user store version");
+        this.count = segment.get(LONG, 8);
+        this.mask = segment.get(LONG, 16) - 1;
+        this.indexOffset = segment.get(LONG, 24);
+    }
+
+    public static MappedUserStore open(Path path) throws IOException {
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            return new MappedUserStore(arena, segment);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    public static void write(Path path, Map<Long, User> users) throws IOException {
+        long[] ids = new long[users.size()];
+        User[] values = new User[users.size()];
+        int i = 0;
+        for (Map.Entry<Long, User> entry : users.entrySet()) {
+            ids[i] = entry.getKey();
+            values[i++] = entry.getValue();
+        }
+        write(path, ids, values);
+    }
+
+    /**
+     * Writes a new store, replacing any existing file. Ids must be unique.
+     */
+    public static void write(Path path, long[] ids, User[] users) throws IOException {
+        if (ids.length != users.length) throw new IllegalArgumentException("ids and users differ in length");
+        byte[][] firstNames = new byte[users.length][];
+        byte[][] lastNames = new byte[users.length][];
+        long dataSize = 0;
+        for (int i = 0; i < users.length; i++) {
+            firstNames[i] = users[i].firstName().getBytes(StandardCharsets.UTF_8);
+            lastNames[i] = users[i].lastName().getBytes(StandardCharsets.UTF_8);
+            dataSize += 8 + firstNames[i].length + lastNames[i].length;
+        }
+        long capacity = Math.max(2, Long.highestOneBit(Math.max(1, ids.length) * 2L - 1) << 1);
+        long indexOffset = HEADER_SIZE;
+        long dataOffset = indexOffset + capacity * SLOT_SIZE;
+
+        try (Arena arena = Arena.ofConfined();
+             FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, dataOffset + dataSize, arena);
+            segment.set(INT, 0, MAGIC);
+            segment.set(INT, 4, VERSION);
+            segment.set(LONG, 8, ids.length);
+            segment.set(LONG, 16, capacity);
+            segment.set(LONG, 24, indexOffset);
+            segment.set(LONG, 32, dataOffset);
+            segment.set(LONG, 40, dataSize);
+
+            long mask = capacity - 1;
+            long position = dataOffset;
+            for (int i = 0; i < ids.length; i++) {
+                long slot = mix(ids[i]) & mask;
+                while (segment.get(LONG, indexOffset + slot * SLOT_SIZE + 8) != 0) {
+                    if (segment.get(LONG, indexOffset + slot * SLOT_SIZE) == ids[i]) {
+                        throw new IllegalArgumentException("Duplicate id " + ids[i]);
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                segment.set(LONG, indexOffset + slot * SLOT_SIZE, ids[i]);
+                segment.set(LONG, indexOffset + slot * SLOT_SIZE + 8, position);
+                position = writeString(segment, position, firstNames[i]);
+                position = writeString(segment, position, lastNames[i]);
+            }
+            segment.force();
+        }
+    }
+
+    public long size() {
+        return count;
+    }
+
+    public boolean contains(long id) {
+        return recordOffset(id) != 0;
+    }
+
+    /**
+     * @return the user, or null if there is no user with that id
+     */
+    public User findUser(long id) {
+        long offset = recordOffset(id);
+        if (offset == 0) return null;
+        int firstLength = segment.get(INT, offset);
+        String firstName = readString(offset + 4, firstLength);
+        long lastOffset = offset + 4 + firstLength;
+        String lastName = readString(lastOffset + 4, segment.get(INT, lastOffset));
+        return new User(firstName, lastName);
+    }
+
+    /**
+     * Every id in the store, in index order.
+     */
+    public long[] ids() {
+        long[] ids = new long[(int) count];
+        int i = 0;
+        for (long slot = 0; slot <= mask; slot++) {
+            long slotOffset = indexOffset + slot * SLOT_SIZE;
+            if (segment.get(LONG, slotOffset + 8) != 0) ids[i++] = segment.get(LONG, slotOffset);
+        }
+        return ids;
+    }
+
+    private long recordOffset(long id) {
+        long slot = mix(id) & mask;
+        while (true) {
+            long slotOffset = indexOffset + slot * SLOT_SIZE;
+            long offset = segment.get(LONG, slotOffset + 8);
+            if (offset == 0) return 0;
+            if (segment.get(LONG, slotOffset) == id) return offset;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private String readString(long offset, int length) {
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long writeString(MemorySegment segment, long position, byte[] bytes) {
+        segment.set(INT, position, bytes.length);
+        MemorySegment.copy(bytes, 0, segment, ValueLayout.JAVA_BYTE, position + 4, bytes.length);
+        return position + 4 + bytes.length;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    @Override
+    public void close() {
+        arena.close();
+    }
+}
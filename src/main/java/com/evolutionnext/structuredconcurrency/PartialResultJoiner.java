@@ -0,0 +1,106 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A Joiner that never fails the scope. It cancels the scope as soon as {@code quorum}
+ * subtasks have succeeded, every subtask has completed, or the deadline forked with
+ * {@link #forkDeadline} passes, whichever comes first, and {@code join()} then returns
+ * every subtask. Those that succeeded in time are {@code SUCCESS}, the ones still running
+ * when the scope was cancelled are {@code UNAVAILABLE}, so the caller can serve what it has.
+ * <pre>{@code
+ * var joiner = PartialResultJoiner.<Object>all();
+ * try (var scope = StructuredTaskScope.open(joiner)) {
+ *     var user = scope.fork(() -> userService.findUser(id));
+ *     var invoices = scope.fork(() -> invoiceService.findAllInvoicesByUser(id));
+ *     joiner.forkDeadline(scope, Duration.ofMillis(200));
+ *     scope.join();
+ * }
+ * }</pre>
+ * Unlike a scope timeout, reaching the deadline is not an error, the subtasks that
+ * completed stay readable.
+ *
+ * @param <T> the result type of the subtasks
+ */
+@SuppressWarnings("preview")
+public class PartialResultJoiner<T> implements StructuredTaskScope.Joiner<T, List<StructuredTaskScope.Subtask<? extends T>>> {
+    private final int quorum;
+    // Only touched by the owner thread, onFork and result run in the owner thread
+    private final List<StructuredTaskScope.Subtask<? extends T>> subtasks = new ArrayList<>();
+    private boolean forkingDeadline;
+    private volatile StructuredTaskScope.Subtask<? extends T> deadline;
+    private final AtomicInteger forks = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+
+    private PartialResultJoiner(int quorum) {
+        this.quorum = quorum;
+    }
+
+    /**
+     * Stops once every subtask has completed or at the deadline.
+     */
+    public static <T> PartialResultJoiner<T> all() {
+        return new PartialResultJoiner<>(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Stops once {@code quorum} subtasks have succeeded, every subtask has completed, or
+     * at the deadline.
+     */
+    public static <T> PartialResultJoiner<T> quorum(int quorum) {
+        if (quorum < 1) throw new IllegalArgumentException("quorum must be positive");
+        return new PartialResultJoiner<>(quorum);
+    }
+
+    /**
+     * Forks the subtask that cancels the scope when {@code budget} runs out, or earlier if
+     * the request's {@link Deadline} is sooner. It must be the last fork of the scope.
+     */
+    public void forkDeadline(StructuredTaskScope<T, ?> scope, Duration budget) {
+        Duration remaining = Deadline.current().map(Deadline::remaining)
+            .filter(r -> r.compareTo(budget) < 0)
+            .orElse(budget);
+        forkingDeadline = true;
+        try {
+            scope.fork(() -> {
+                Thread.sleep(remaining);
+                return null;
+            });
+        } finally {
+            forkingDeadline = false;
+        }
+    }
+
+    @Override
+    public boolean onFork(StructuredTaskScope.Subtask<? extends T> subtask) {
+        if (deadline != null) throw new IllegalStateException("The deadline must be the last fork");
+        if (forkingDeadline) {
+            deadline = subtask;
+            // Everything may have completed before the deadline was forked
+            return completed.get() == forks.get();
+        }
+        subtasks.add(subtask);
+        forks.incrementAndGet();
+        return false;
+    }
+
+    @Override
+    public boolean onComplete(StructuredTaskScope.Subtask<? extends T> subtask) {
+        if (subtask == deadline) return true;
+        if (subtask.state() == StructuredTaskScope.Subtask.State.SUCCESS && succeeded.incrementAndGet() >= quorum) {
+            return true;
+        }
+        // Until the deadline is forked more subtasks may follow
+        return completed.incrementAndGet() == forks.get() && deadline != null;
+    }
+
+    @Override
+    public List<StructuredTaskScope.Subtask<? extends T>> result() {
+        return List.copyOf(subtasks);
+    }
+}
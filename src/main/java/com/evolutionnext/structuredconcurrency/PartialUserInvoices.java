@@ -0,0 +1,41 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A {@link UserInvoices} that may be degraded: each part says whether it is fresh, stale,
+ * i.e. a last known value served in place of a fresh one, or missing.
+ */
+public record PartialUserInvoices(Part<User> user, Part<List<Invoice>> invoices) {
+    public enum Status {FRESH, STALE, MISSING}
+
+    public record Part<T>(Status status, T value) {
+        public static <T> Part<T> fresh(T value) {
+            return new Part<>(Status.FRESH, value);
+        }
+
+        public static <T> Part<T> stale(T value) {
+            return new Part<>(Status.STALE, value);
+        }
+
+        public static <T> Part<T> missing() {
+            return new Part<>(Status.MISSING, null);
+        }
+
+        public Optional<T> toOptional() {
+            return Optional.ofNullable(value);
+        }
+    }
+
+    public boolean isComplete() {
+        return user.status() == Status.FRESH && invoices.status() == Status.FRESH;
+    }
+
+    /**
+     * @return the full result if both parts are fresh
+     */
+    public Optional<UserInvoices> toUserInvoices() {
+        return isComplete() ? Optional.of(new UserInvoices(user.value(), invoices.value())) : Optional.empty();
+    }
+}
@@ -0,0 +1,25 @@
+package com.evolutionnext.structuredconcurrency;
+
+import io.reactivex.rxjava3.core.Flowable;
+import org.reactivestreams.FlowAdapters;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Bridges {@link Flow.Publisher} to Reactor and RxJava. Both keep the demand of their
+ * subscribers, so backpressure reaches the original publisher.
+ */
+public final class ReactiveAdapters {
+    private ReactiveAdapters() {
+    }
+
+    public static <T> Flux<T> toFlux(Flow.Publisher<T> publisher) {
+        return JdkFlowAdapter.flowPublisherToFlux(publisher);
+    }
+
+    public static <T> Flowable<T> toFlowable(Flow.Publisher<T> publisher) {
+        return Flowable.fromPublisher(FlowAdapters.toPublisher(publisher));
+    }
+}
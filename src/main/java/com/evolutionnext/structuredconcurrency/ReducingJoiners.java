@@ -0,0 +1,182 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.OptionalLong;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * Joiners that fold each result into an accumulator as its subtask completes and then
+ * forget the subtask. Unlike {@code Joiner.allSuccessfulOrThrow()}, which keeps every
+ * Subtask until {@code join()}, the heap used by these stays flat no matter how many
+ * subtasks are forked. The accumulators are striped, {@link LongAdder} and friends, so
+ * a million virtual threads completing at once do not contend on one counter.
+ * <p>
+ * Like {@code allSuccessfulOrThrow()}, the first failed subtask cancels the scope and
+ * its exception is the cause of the {@code FailedException} thrown by {@code join()}.
+ */
+@SuppressWarnings("preview")
+public final class ReducingJoiners {
+    private ReducingJoiners() {
+    }
+
+    private abstract static class ReducingJoiner<T, R> implements StructuredTaskScope.Joiner<T, R> {
+        private final AtomicReference<Throwable> firstException = new AtomicReference<>();
+
+        abstract void accumulate(T value);
+
+        abstract R reduce();
+
+        @Override
+        public boolean onComplete(StructuredTaskScope.Subtask<? extends T> subtask) {
+            return switch (subtask.state()) {
+                case SUCCESS -> {
+                    accumulate(subtask.get());
+                    yield false;
+                }
+                case FAILED -> firstException.compareAndSet(null, subtask.exception());
+                case UNAVAILABLE -> false;
+            };
+        }
+
+        @Override
+        public R result() throws Throwable {
+            Throwable exception = firstException.get();
+            if (exception != null) throw exception;
+            return reduce();
+        }
+    }
+
+    public static <T> StructuredTaskScope.Joiner<T, Long> counting() {
+        return new ReducingJoiner<>() {
+            private final LongAdder count = new LongAdder();
+
+            @Override
+            void accumulate(T value) {
+                count.increment();
+            }
+
+            @Override
+            Long reduce() {
+                return count.sum();
+            }
+        };
+    }
+
+    public static <T> StructuredTaskScope.Joiner<T, Long> summingLong(ToLongFunction<? super T> mapper) {
+        return new ReducingJoiner<>() {
+            private final LongAdder sum = new LongAdder();
+
+            @Override
+            void accumulate(T value) {
+                sum.add(mapper.applyAsLong(value));
+            }
+
+            @Override
+            Long reduce() {
+                return sum.sum();
+            }
+        };
+    }
+
+    public static <T> StructuredTaskScope.Joiner<T, Double> summingDouble(ToDoubleFunction<? super T> mapper) {
+        return new ReducingJoiner<>() {
+            private final DoubleAdder sum = new DoubleAdder();
+
+            @Override
+            void accumulate(T value) {
+                sum.add(mapper.applyAsDouble(value));
+            }
+
+            @Override
+            Double reduce() {
+                return sum.sum();
+            }
+        };
+    }
+
+    public static <T> StructuredTaskScope.Joiner<T, OptionalLong> minLong(ToLongFunction<? super T> mapper) {
+        return extremeLong(mapper, new LongAccumulator(Math::min, Long.MAX_VALUE));
+    }
+
+    public static <T> StructuredTaskScope.Joiner<T, OptionalLong> maxLong(ToLongFunction<? super T> mapper) {
+        return extremeLong(mapper, new LongAccumulator(Math::max, Long.MIN_VALUE));
+    }
+
+    private static <T> StructuredTaskScope.Joiner<T, OptionalLong> extremeLong(ToLongFunction<? super T> mapper,
+                                                                             LongAccumulator accumulator) {
+        return new ReducingJoiner<>() {
+            private final LongAdder count = new LongAdder();
+
+            @Override
+            void accumulate(T value) {
+                accumulator.accumulate(mapper.applyAsLong(value));
+                count.increment();
+            }
+
+            @Override
+            OptionalLong reduce() {
+                return count.sum() == 0 ? OptionalLong.empty() : OptionalLong.of(accumulator.get());
+            }
+        };
+    }
+
+    /**
+     * The generic accumulator, any {@link Collector} can be used, e.g. {@code Collectors.maxBy}
+     * or {@code Collectors.groupingBy}. Results are folded into one of several stripes, picked
+     * by the completing thread, and the stripes are combined once in {@code result()}.
+     */
+    public static <T, A, R> StructuredTaskScope.Joiner<T, R> collecting(Collector<? super T, A, R> collector) {
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        return new ReducingJoiner<>() {
+            private final ReentrantLock[] locks = new ReentrantLock[stripes];
+            private final Object[] containers = new Object[stripes];
+
+            {
+                for (int i = 0; i < stripes; i++) {
+                    locks[i] = new ReentrantLock();
+                    containers[i] = collector.supplier().get();
+                }
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            void accumulate(T value) {
+                int stripe = (int) mix(Thread.currentThread().threadId()) & (stripes - 1);
+                locks[stripe].lock();
+                try {
+                    collector.accumulator().accept((A) containers[stripe], value);
+                } finally {
+                    locks[stripe].unlock();
+                }
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            R reduce() {
+                A combined = null;
+                for (int i = 0; i < stripes; i++) {
+                    locks[i].lock();
+                    try {
+                        A container = (A) containers[i];
+                        combined = combined == null ? container : collector.combiner().apply(combined, container);
+                    } finally {
+                        locks[i].unlock();
+                    }
+                }
+                return collector.finisher().apply(combined);
+            }
+        };
+    }
+
+    private static long mix(long id) {
+        id *= 0x9E3779B97F4A7C15L;
+        return id ^ (id >>> 32);
+    }
+}
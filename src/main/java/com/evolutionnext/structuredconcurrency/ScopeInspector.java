@@ -0,0 +1,381 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Shows which structured scope is waiting on which subtask, and what that subtask is blocked
+ * on, from the JSON thread dump the JDK writes with {@code jcmd <pid> Thread.dump_to_file
+ * -format=json}. That dump is the only one that lists virtual threads, grouped into thread
+ * containers. A container with an owner thread is a {@code StructuredTaskScope}, its threads
+ * are the subtasks and its parent is the enclosing scope or executor.
+ * <p>
+ * The dump is read with a streaming parser and only the top frame, the first application
+ * frame and the blocker of each thread are kept, so a dump of a million threads does not
+ * need a million stacks in memory.
+ * <p>
+ * A dump has no timestamps for scopes, so an inspector remembers when it first saw each
+ * scope and each subtask at its current frame. Inspect repeatedly to see a scope become
+ * {@code old} after {@code oldAfter}, or a subtask become {@code stuck} after
+ * {@code stuckAfter} at the same frame. A subtask in a call matching {@code suspect}, by
+ * default any {@code *LongTime} method such as {@link UserService#findUserLongTime}, is
+ * stuck at once.
+ * <p>
+ * In process, {@link #register} exposes it over JMX. From outside, run
+ * {@code ScopeInspector --pid <pid>} or {@code --file <dump.json>}, with {@code --every <seconds>}
+ * to keep sampling.
+ */
+public class ScopeInspector implements ScopeInspectorMXBean {
+    public static final String OBJECT_NAME = "com.evolutionnext:type=ScopeInspector";
+    public static final Pattern LONG_TIME_CALLS = Pattern.compile("\\.\\w*LongTime\\(");
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int LIMIT = 10;
+
+    private final Duration oldAfter;
+    private final Duration stuckAfter;
+    private final Pattern suspect;
+    private Map<String, Instant> scopesFirstSeen = new HashMap<>();
+    private Map<String, Instant> framesFirstSeen = new HashMap<>();
+
+    private record Container(String name, String parent, String owner, List<String> tids) {
+    }
+
+    private record ThreadSummary(String tid, String state, String blockedOn, String at, boolean suspect) {
+    }
+
+    public ScopeInspector(Duration oldAfter, Duration stuckAfter, Pattern suspect) {
+        this.oldAfter = oldAfter;
+        this.stuckAfter = stuckAfter;
+        this.suspect = suspect;
+    }
+
+    public ScopeInspector() {
+        this(Duration.ofSeconds(30), Duration.ofSeconds(10), LONG_TIME_CALLS);
+    }
+
+    /**
+     * Registers the inspector with the platform MBean server as {@value #OBJECT_NAME}.
+     */
+    public static ScopeInspector register(ScopeInspector inspector) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(inspector, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+        return inspector;
+    }
+
+    /**
+     * Dumps the threads of this JVM and inspects them.
+     */
+    public ScopeTree capture() throws IOException {
+        Path directory = Files.createTempDirectory("scope-inspector");
+        Path file = directory.resolve("threads.json");
+        try {
+            ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                .dumpThreads(file.toString(), HotSpotDiagnosticMXBean.ThreadDumpFormat.JSON);
+            return inspect(file);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Dumps the threads of another JVM with {@code jcmd} and inspects them.
+     */
+    public ScopeTree capture(long pid) throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("scope-inspector");
+        Path file = directory.resolve("threads.json");
+        try {
+            Process jcmd = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "jcmd").toString(),
+                String.valueOf(pid), "Thread.dump_to_file", "-format=json", file.toString())
+                .redirectErrorStream(true)
+                .start();
+            String output = new String(jcmd.getInputStream().readAllBytes());
+            if (jcmd.waitFor() != 0 || !Files.exists(file)) {
+                throw new IOException("jcmd could not dump the threads of " + pid + ": " + output.strip());
+            }
+            return inspect(file);
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    public ScopeTree inspect(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return inspect(in);
+        }
+    }
+
+    /**
+     * Reads a JSON thread dump and builds its scope tree, aging the scopes and subtasks
+     * already seen by previous calls.
+     */
+    public synchronized ScopeTree inspect(InputStream json) throws IOException {
+        Instant capturedAt = null;
+        List<Container> containers = new ArrayList<>();
+        Map<String, ThreadSummary> threads = new HashMap<>();
+        Map<String, String> strings = new HashMap<>();
+        try (JsonParser parser = JSON.createParser(json)) {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token != JsonToken.FIELD_NAME) continue;
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "time" -> capturedAt = parseInstant(parser.getText());
+                    case "threadContainers" -> readContainers(parser, containers, threads, strings);
+                    case "threadDump" -> { }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return build(capturedAt != null ? capturedAt : Instant.now(), containers, threads);
+    }
+
+    @Override
+    public String dumpScopeTree() throws IOException {
+        return capture().render(false, LIMIT);
+    }
+
+    @Override
+    public String dumpFlaggedScopes() throws IOException {
+        return capture().render(true, LIMIT);
+    }
+
+    @Override
+    public long getOldAfterSeconds() {
+        return oldAfter.toSeconds();
+    }
+
+    @Override
+    public long getStuckAfterSeconds() {
+        return stuckAfter.toSeconds();
+    }
+
+    private void readContainers(JsonParser parser, List<Container> containers, Map<String, ThreadSummary> threads,
+                                Map<String, String> strings) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            String parent = null;
+            String owner = null;
+            List<String> tids = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "container" -> name = parser.getText();
+                    case "parent" -> parent = textOrNull(parser);
+                    case "owner" -> owner = textOrNull(parser);
+                    case "threads" -> {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            ThreadSummary thread = readThread(parser, strings);
+                            threads.put(thread.tid(), thread);
+                            tids.add(thread.tid());
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+            containers.add(new Container(name, parent, owner, tids));
+        }
+    }
+
+    private ThreadSummary readThread(JsonParser parser, Map<String, String> strings) throws IOException {
+        String tid = null;
+        String state = null;
+        String blockedOn = null;
+        String top = null;
+        String at = null;
+        boolean isSuspect = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "tid" -> tid = parser.getText();
+                case "state" -> state = dedup(strings, textOrNull(parser));
+                case "parkBlocker", "blockedOn", "waitingOn" -> blockedOn = dedup(strings, readBlocker(parser));
+                case "stack" -> {
+                    while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                        String frame = parser.getText();
+                        if (top == null) top = frame;
+                        if (isApplicationFrame(frame)) {
+                            if (at == null) at = frame;
+                            if (!isSuspect && suspect.matcher(frame).find()) isSuspect = true;
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return new ThreadSummary(tid, state, dedup(strings, blockedOn != null ? blockedOn : top),
+            dedup(strings, at), isSuspect);
+    }
+
+    private ScopeTree build(Instant now, List<Container> containers, Map<String, ThreadSummary> threads) {
+        Map<String, Container> byName = new HashMap<>();
+        containers.forEach(container -> byName.put(container.name(), container));
+        Map<String, List<Container>> childScopes = new HashMap<>();
+        List<Container> rootScopes = new ArrayList<>();
+        for (Container container : containers) {
+            if (container.owner() == null) continue;
+            Container parent = byName.get(container.parent());
+            while (parent != null && parent.owner() == null) {
+                parent = byName.get(parent.parent());
+            }
+            if (parent == null) {
+                rootScopes.add(container);
+            } else {
+                childScopes.computeIfAbsent(parent.name(), _ -> new ArrayList<>()).add(container);
+            }
+        }
+
+        Map<String, Instant> scopesSeen = new HashMap<>();
+        Map<String, Instant> framesSeen = new HashMap<>();
+        List<ScopeTree.Scope> roots = new ArrayList<>();
+        for (Container root : rootScopes) {
+            roots.add(buildScope(now, root, childScopes, threads, scopesSeen, framesSeen));
+        }
+        // Forget what is gone, so a long-running inspector does not grow
+        scopesFirstSeen = scopesSeen;
+        framesFirstSeen = framesSeen;
+        return new ScopeTree(now, roots);
+    }
+
+    private ScopeTree.Scope buildScope(Instant now, Container container, Map<String, List<Container>> childScopes,
+                                       Map<String, ThreadSummary> threads, Map<String, Instant> scopesSeen,
+                                       Map<String, Instant> framesSeen) {
+        Instant firstSeen = scopesFirstSeen.getOrDefault(container.name(), now);
+        scopesSeen.put(container.name(), firstSeen);
+        Duration age = Duration.between(firstSeen, now);
+
+        List<ScopeTree.Subtask> subtasks = new ArrayList<>(container.tids().size());
+        for (String tid : container.tids()) {
+            ThreadSummary thread = threads.get(tid);
+            String key = tid + '@' + thread.at();
+            Instant atSince = framesFirstSeen.getOrDefault(key, now);
+            framesSeen.put(key, atSince);
+            boolean stuck = thread.suspect() || isOver(Duration.between(atSince, now), stuckAfter);
+            subtasks.add(new ScopeTree.Subtask(tid, thread.state(), thread.blockedOn(), thread.at(), stuck));
+        }
+
+        List<ScopeTree.Scope> children = new ArrayList<>();
+        for (Container child : childScopes.getOrDefault(container.name(), List.of())) {
+            children.add(buildScope(now, child, childScopes, threads, scopesSeen, framesSeen));
+        }
+        ThreadSummary owner = threads.get(container.owner());
+        return new ScopeTree.Scope(container.name(), container.owner(), owner != null ? owner.at() : null,
+            age, isOver(age, oldAfter), subtasks, children);
+    }
+
+    // Nothing is over a threshold the first time it is seen
+    private static boolean isOver(Duration age, Duration threshold) {
+        return age.isPositive() && age.compareTo(threshold) >= 0;
+    }
+
+    private static boolean isApplicationFrame(String frame) {
+        return !(frame.startsWith("java.") || frame.startsWith("jdk.") || frame.startsWith("sun.")
+                 || frame.startsWith("com.sun."));
+    }
+
+    /**
+     * A blocker is a string in older dumps, an object with the blocker in {@code object} in newer ones.
+     */
+    private static String readBlocker(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) return textOrNull(parser);
+        String object = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("object")) {
+                object = textOrNull(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return object;
+    }
+
+    private static String textOrNull(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    // A million subtasks parked at the same frame share one string
+    private static String dedup(Map<String, String> strings, String value) {
+        if (value == null) return null;
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    private static Instant parseInstant(String text) {
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            return Instant.now();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parse(args);
+        ScopeInspector inspector = new ScopeInspector(
+            Duration.ofSeconds(Long.parseLong(options.getOrDefault("old-after", "30"))),
+            Duration.ofSeconds(Long.parseLong(options.getOrDefault("stuck-after", "10"))),
+            Pattern.compile(options.getOrDefault("suspect", LONG_TIME_CALLS.pattern())));
+        boolean flaggedOnly = options.containsKey("flagged");
+        int limit = Integer.parseInt(options.getOrDefault("limit", String.valueOf(LIMIT)));
+        long every = Long.parseLong(options.getOrDefault("every", "0"));
+        while (true) {
+            ScopeTree tree;
+            if (options.containsKey("pid")) {
+                tree = inspector.capture(Long.parseLong(options.get("pid")));
+            } else if (options.containsKey("file")) {
+                tree = inspector.inspect(Path.of(options.get("file")));
+            } else {
+                throw new IllegalArgumentException("Usage: ScopeInspector (--pid <pid> | --file <dump.json>) " +
+                                                   "[--old-after <s>] [--stuck-after <s>] [--suspect <regex>] " +
+                                                   "[--every <s>] [--limit <n>] [--flagged]");
+            }
+            AsyncLogSink.stdout().println(tree.render(flaggedOnly, limit));
+            if (every <= 0) return;
+            Thread.sleep(Duration.ofSeconds(every));
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            String name = args[i].substring(2);
+            if (name.equals("flagged")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+        }
+        return options;
+    }
+}
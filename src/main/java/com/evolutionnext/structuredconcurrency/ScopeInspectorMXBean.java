@@ -0,0 +1,24 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.io.IOException;
+
+/**
+ * The JMX face of {@link ScopeInspector}, registered as {@value ScopeInspector#OBJECT_NAME}.
+ * Every operation takes a fresh thread dump.
+ */
+public interface ScopeInspectorMXBean {
+
+    /**
+     * @return every structured scope with its subtasks, as indented text
+     */
+    String dumpScopeTree() throws IOException;
+
+    /**
+     * @return only the scopes that are old or have stuck subtasks, with the scopes around them
+     */
+    String dumpFlaggedScopes() throws IOException;
+
+    long getOldAfterSeconds();
+
+    long getStuckAfterSeconds();
+}
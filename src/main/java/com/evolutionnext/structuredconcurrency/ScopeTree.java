@@ -0,0 +1,105 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The structured scopes of a JVM at one moment, as read from a thread dump by
+ * {@link ScopeInspector}. Each scope holds the subtasks running in it and the scopes opened
+ * by those subtasks.
+ *
+ * @param capturedAt when the thread dump was taken
+ * @param roots      the scopes not nested in another scope
+ */
+public record ScopeTree(Instant capturedAt, List<Scope> roots) {
+
+    /**
+     * @param name     the scope's name, its identity string unless configured with {@code withName}
+     * @param owner    the id of the thread that opened the scope
+     * @param openedIn the first application frame of the owner, e.g. the service method that opened it
+     * @param age      how long the scope has been seen, at least, across the dumps inspected
+     * @param old      whether the age is over the inspector's threshold
+     * @param subtasks the threads running in the scope
+     * @param children the scopes opened by those threads
+     */
+    public record Scope(String name, String owner, String openedIn, Duration age, boolean old,
+                        List<Subtask> subtasks, List<Scope> children) {
+
+        public Stream<Scope> flatten() {
+            return Stream.concat(Stream.of(this), children.stream().flatMap(Scope::flatten));
+        }
+
+        public boolean isFlagged() {
+            return old || subtasks.stream().anyMatch(Subtask::stuck);
+        }
+    }
+
+    /**
+     * @param tid       the thread id
+     * @param state     the thread state, null if the dump has none
+     * @param blockedOn the object the thread is parked or blocked on, or else its top frame
+     * @param at        the first application frame, null if the stack has none
+     * @param stuck     whether the subtask is in a suspect call or has been at the same frame too long
+     */
+    public record Subtask(String tid, String state, String blockedOn, String at, boolean stuck) {
+    }
+
+    public Stream<Scope> scopes() {
+        return roots.stream().flatMap(Scope::flatten);
+    }
+
+    public Stream<Scope> flagged() {
+        return scopes().filter(Scope::isFlagged);
+    }
+
+    /**
+     * Renders the tree as indented text. A scope lists at most {@code limit} subtasks, stuck
+     * ones first, the rest are counted by frame, so a scope of a million subtasks stays readable.
+     *
+     * @param flaggedOnly leave out scopes that have nothing flagged in them or below them
+     */
+    public String render(boolean flaggedOnly, int limit) {
+        StringBuilder out = new StringBuilder();
+        out.append("Scopes at ").append(capturedAt).append('\n');
+        for (Scope root : roots) {
+            render(out, root, 0, flaggedOnly, limit);
+        }
+        return out.toString();
+    }
+
+    private static void render(StringBuilder out, Scope scope, int depth, boolean flaggedOnly, int limit) {
+        if (flaggedOnly && scope.flatten().noneMatch(Scope::isFlagged)) return;
+        String indent = "  ".repeat(depth);
+        out.append(indent).append("scope ").append(scope.name())
+            .append(" owner #").append(scope.owner())
+            .append(" in ").append(scope.openedIn())
+            .append(", seen ").append(scope.age().toSeconds()).append("s")
+            .append(", ").append(scope.subtasks().size()).append(" subtasks")
+            .append(scope.old() ? "  OLD" : "").append('\n');
+        List<Subtask> subtasks = scope.subtasks().stream()
+            .sorted(Comparator.comparing(Subtask::stuck).reversed())
+            .toList();
+        int listed = Math.min(limit, subtasks.size());
+        for (Subtask subtask : subtasks.subList(0, listed)) {
+            out.append(indent).append("  #").append(subtask.tid())
+                .append(' ').append(subtask.state())
+                .append(" at ").append(subtask.at())
+                .append(" on ").append(subtask.blockedOn())
+                .append(subtask.stuck() ? "  STUCK" : "").append('\n');
+        }
+        subtasks.subList(listed, subtasks.size()).stream()
+            .collect(Collectors.groupingBy(subtask -> String.valueOf(subtask.at()), Collectors.counting()))
+            .entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .forEach(entry -> out.append(indent).append("  ... ").append(entry.getValue())
+                .append(" more at ").append(entry.getKey()).append('\n'));
+        for (Scope child : scope.children()) {
+            render(out, child, depth + 1, flaggedOnly, limit);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link CircuitBreaker} and an {@link AdaptiveLimiter} in front of one downstream service.
+ * Wrap the task of a subtask with {@link #protect} and, when the service is unhealthy or at
+ * its limit, the subtask fails at once with {@link ServiceUnavailableException} instead of
+ * hanging. With a Joiner like {@code awaitAllSuccessfulOrThrow} that failure cancels the
+ * scope, so the whole request fails fast and no virtual threads pile up behind a slow
+ * service.
+ * <pre>{@code
+ * scope.fork(userGuard.protect(() -> userService.findUser(id)));
+ * }</pre>
+ * Calls that end because the subtask was cancelled, or with a {@link NoSuchElementException}
+ * for an id the service does not know, say nothing about its health, they neither trip the
+ * breaker nor shrink the limit.
+ */
+public class ServiceGuard {
+    private final String service;
+    private final CircuitBreaker breaker;
+    private final AdaptiveLimiter limiter;
+    private final LongAdder rejected = new LongAdder();
+
+    public ServiceGuard(String service, CircuitBreaker breaker, AdaptiveLimiter limiter) {
+        this.service = service;
+        this.breaker = breaker;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Opens after 5 consecutive failures or calls slower than a second, probes again after 5
+     * seconds, and limits concurrency between 8 and 10,000 starting at 1,000.
+     */
+    public static ServiceGuard withDefaults(String service) {
+        return new ServiceGuard(service,
+            new CircuitBreaker(5, Duration.ofSeconds(1), Duration.ofSeconds(5), 1),
+            new AdaptiveLimiter(1_000, 8, 10_000, 0.9, Duration.ofSeconds(1)));
+    }
+
+    public String service() {
+        return service;
+    }
+
+    public CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    public AdaptiveLimiter limiter() {
+        return limiter;
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public <T> Callable<T> protect(Callable<T> task) {
+        return () -> {
+            if (!limiter.tryAcquire()) {
+                rejected.increment();
+                throw new ServiceUnavailableException(service + " is at its concurrency limit of " + limiter.limit());
+            }
+            if (!breaker.tryAcquire()) {
+                limiter.onIgnored();
+                rejected.increment();
+                throw new ServiceUnavailableException(service + " circuit is open");
+            }
+            long start = System.nanoTime();
+            try {
+                T result = task.call();
+                long latency = System.nanoTime() - start;
+                breaker.onSuccess(latency);
+                limiter.onSuccess(latency);
+                return result;
+            } catch (Throwable t) {
+                // A not-found is the client's outcome, counting it would let unknown ids open the circuit
+                if (Cancellations.isCancellation(t) || t instanceof NoSuchElementException) {
+                    breaker.onIgnored();
+                    limiter.onIgnored();
+                } else {
+                    breaker.onFailure();
+                    limiter.onDropped();
+                }
+                throw t;
+            }
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package com.evolutionnext.structuredconcurrency;
+
+/**
+ * Thrown instead of calling a service that a {@link ServiceGuard} considers unhealthy or
+ * saturated.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
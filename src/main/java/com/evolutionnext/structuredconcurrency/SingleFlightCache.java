@@ -0,0 +1,248 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A size bounded, TTL based cache where concurrent misses for the same key share one
+ * in-flight load (single-flight). A hundred virtual threads asking for the same key at
+ * once cause a single call to the loader, the rest block until it completes.
+ * <p>
+ * Eviction is first-in first-out once the cache holds more than {@code maximumSize}
+ * entries. Failed loads are not cached. An entry that leaves the map is only marked retired,
+ * which is O(1) inside the map's compute, eviction skips it and retired entries are swept out
+ * of the queue once there are more than {@code maximumSize} of them.
+ * <p>
+ * The load runs on the thread of the first caller. If that caller is cancelled its failure
+ * is its own, the callers waiting on the load try again, one of them loading in its place.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class SingleFlightCache<K, V> {
+    private final Map<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry<K, V>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger retiredInQueue = new AtomicInteger();
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    public record Stats(long hits, long misses, long loads, long loadFailures, Duration averageLoadTime) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+
+    private static final class Entry<K, V> {
+        private static final int QUEUED = 0;
+        private static final int RETIRED = 1;
+        private static final int DEQUEUED = 2;
+
+        private final K key;
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private long expiresAt;
+        private volatile boolean loaded;
+
+        private Entry(K key) {
+            this.key = key;
+        }
+
+        /**
+         * An entry still loading never expires, expiresAt is only read once loaded publishes it.
+         */
+        private boolean isExpired(long now) {
+            return loaded && now - expiresAt >= 0;
+        }
+    }
+
+    /**
+     * Completes the shared load when the loading caller was cancelled, so waiters retry
+     * instead of failing with another request's cancellation.
+     */
+    private static final class LoaderCancelledException extends RuntimeException {
+        private LoaderCancelledException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    public SingleFlightCache(int maximumSize, Duration ttl) {
+        if (maximumSize < 1) throw new IllegalArgumentException("maximumSize must be positive");
+        this.maximumSize = maximumSize;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) throws InterruptedException {
+        while (true) {
+            Entry<K, V> entry = entries.get(key);
+            if (entry != null && !entry.isExpired(System.nanoTime())) {
+                hits.increment();
+                try {
+                    return await(entry);
+                } catch (LoaderCancelledException e) {
+                    continue;
+                }
+            }
+            misses.increment();
+            Entry<K, V> mine = new Entry<>(key);
+            Entry<K, V> current = entries.compute(key, (_, existing) -> {
+                if (existing != null && !existing.isExpired(System.nanoTime())) return existing;
+                // A reload takes the place of the expired entry, which eviction then skips
+                if (existing != null) retire(existing);
+                insertionOrder.add(mine);
+                return mine;
+            });
+            if (current != mine) {
+                try {
+                    return await(current);
+                } catch (LoaderCancelledException e) {
+                    continue;
+                }
+            }
+
+            evictIfNeeded();
+            load(mine, loader);
+            return await(mine);
+        }
+    }
+
+    /**
+     * @return the value if it is cached, loaded and not expired, otherwise null without loading
+     */
+    public V getIfPresent(K key) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry == null || entry.isExpired(System.nanoTime()) || !entry.value.isDone() ||
+            entry.value.isCompletedExceptionally()) {
+            return null;
+        }
+        hits.increment();
+        return entry.value.resultNow();
+    }
+
+    public void invalidate(K key) {
+        entries.computeIfPresent(key, (_, existing) -> {
+            retire(existing);
+            return null;
+        });
+        sweepIfNeeded();
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        insertionOrder.clear();
+        retiredInQueue.set(0);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of entries waiting for eviction, always {@link #size()} once no get is in flight
+     */
+    int queuedForEviction() {
+        return insertionOrder.size() - retiredInQueue.get();
+    }
+
+    /**
+     * @return the number of retired entries still in the eviction queue, at most {@code maximumSize}
+     * once no get is in flight
+     */
+    int retiredInEvictionQueue() {
+        return retiredInQueue.get();
+    }
+
+    public Stats stats() {
+        long loadCount = loads.sum();
+        Duration average = loadCount == 0 ? Duration.ZERO : Duration.ofNanos(loadNanos.sum() / loadCount);
+        return new Stats(hits.sum(), misses.sum(), loadCount, loadFailures.sum(), average);
+    }
+
+    /**
+     * Loads the entry, a failure is rethrown to the loading caller as it is.
+     */
+    private void load(Entry<K, V> entry, Function<? super K, ? extends V> loader) {
+        long start = System.nanoTime();
+        loads.increment();
+        try {
+            V value = loader.apply(entry.key);
+            long end = System.nanoTime();
+            loadNanos.add(end - start);
+            entry.expiresAt = end + ttlNanos;
+            entry.loaded = true;
+            entry.value.complete(value);
+        } catch (Throwable t) {
+            loadNanos.add(System.nanoTime() - start);
+            loadFailures.increment();
+            entries.computeIfPresent(entry.key, (_, existing) -> {
+                if (existing != entry) return existing;
+                retire(entry);
+                return null;
+            });
+            sweepIfNeeded();
+            entry.value.completeExceptionally(Cancellations.isCancellation(t) ? new LoaderCancelledException(t) : t);
+            throw t;
+        }
+    }
+
+    private void evictIfNeeded() {
+        sweepIfNeeded();
+        while (entries.size() > maximumSize) {
+            Entry<K, V> oldest = insertionOrder.poll();
+            if (oldest == null) return;
+            // Already out of the map, or claimed by a sweep that lost the node to this poll
+            if (!dequeue(oldest)) continue;
+            entries.remove(oldest.key, oldest);
+        }
+    }
+
+    /**
+     * Marks an entry that left the map, called inside compute so it must not scan the queue.
+     */
+    private void retire(Entry<K, V> entry) {
+        if (entry.state.compareAndSet(Entry.QUEUED, Entry.RETIRED)) retiredInQueue.incrementAndGet();
+    }
+
+    /**
+     * Claims a polled entry for eviction.
+     *
+     * @return false if it was retired or already claimed, and so is not in the map
+     */
+    private boolean dequeue(Entry<K, V> entry) {
+        int previous = entry.state.getAndSet(Entry.DEQUEUED);
+        if (previous == Entry.RETIRED) retiredInQueue.decrementAndGet();
+        return previous == Entry.QUEUED;
+    }
+
+    private void sweepIfNeeded() {
+        if (retiredInQueue.get() <= maximumSize) return;
+        insertionOrder.removeIf(entry -> {
+            if (!entry.state.compareAndSet(Entry.RETIRED, Entry.DEQUEUED)) return false;
+            retiredInQueue.decrementAndGet();
+            return true;
+        });
+    }
+
+    private V await(Entry<K, V> entry) throws InterruptedException {
+        try {
+            return entry.value.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.evolutionnext.structuredconcurrency;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A Joiner that hands each successful result to a consumer as soon as its subtask
+ * completes and keeps no reference to the subtask, so memory does not grow with the
+ * number of forks. It also hands out permits, at most {@code maxInFlight}, that the
+ * owner acquires before every fork and that are given back as subtasks complete.
+ * {@link BoundedScope} puts the two together.
+ * <p>
+ * The first failure cancels the scope and is rethrown by {@link #result()}.
+ * The consumer is called from the subtask threads, so it must be thread safe.
+ *
+ * @param <T> the result type of the subtasks
+ */
+@SuppressWarnings("preview")
+public class StreamingJoiner<T> implements StructuredTaskScope.Joiner<T, Void> {
+    private final Semaphore inFlight;
+    private final Consumer<? super T> consumer;
+    private final AtomicReference<Throwable> firstException = new AtomicReference<>();
+
+    public StreamingJoiner(int maxInFlight, Consumer<? super T> consumer) {
+        if (maxInFlight < 1) throw new IllegalArgumentException("maxInFlight must be positive");
+        this.inFlight = new Semaphore(maxInFlight);
+        this.consumer = consumer;
+    }
+
+    /**
+     * Called by the owner before forking, blocks while {@code maxInFlight} subtasks are running.
+     * Subtasks that complete after the scope is cancelled, e.g. by a timeout, never give their
+     * permit back, so this stops waiting once the scope is cancelled.
+     *
+     * @return true with a permit, false without one if the scope was cancelled
+     */
+    public boolean acquire(StructuredTaskScope<?, ?> scope) throws InterruptedException {
+        while (!inFlight.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+            if (scope.isCancelled()) return false;
+        }
+        return true;
+    }
+
+    public boolean hasFailed() {
+        return firstException.get() != null;
+    }
+
+    @Override
+    public boolean onComplete(StructuredTaskScope.Subtask<? extends T> subtask) {
+        try {
+            switch (subtask.state()) {
+                case SUCCESS -> consumer.accept(subtask.get());
+                case FAILED -> {
+                    return firstException.compareAndSet(null, subtask.exception());
+                }
+                case UNAVAILABLE -> { }
+            }
+            return false;
+        } catch (Throwable t) {
+            // A failing consumer fails the scope just like a failing subtask
+            return firstException.compareAndSet(null, t);
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    @Override
+    public Void result() throws Throwable {
+        Throwable exception = firstException.get();
+        if (exception != null) throw exception;
+        return null;
+    }
+}
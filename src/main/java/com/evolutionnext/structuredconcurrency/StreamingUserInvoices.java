@@ -0,0 +1,20 @@
+package com.evolutionnext.structuredconcurrency;
+
+import io.reactivex.rxjava3.core.Flowable;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Like {@link UserInvoices}, but the invoices are a cold publisher instead of a list, so
+ * they are only read as fast as the subscriber consumes them.
+ */
+public record StreamingUserInvoices(User user, Flow.Publisher<Invoice> invoices) {
+    public Flux<Invoice> invoicesAsFlux() {
+        return ReactiveAdapters.toFlux(invoices);
+    }
+
+    public Flowable<Invoice> invoicesAsFlowable() {
+        return ReactiveAdapters.toFlowable(invoices);
+    }
+}
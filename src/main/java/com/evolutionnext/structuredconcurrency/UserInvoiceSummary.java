@@ -0,0 +1,4 @@
+package com.evolutionnext.structuredconcurrency;
+
+public record UserInvoiceSummary(User user, InvoiceSummary invoices) {
+}
@@ -1,7 +1,12 @@
 package com.evolutionnext.structuredconcurrency;
 
+import com.evolutionnext.virtualthreads.AsyncLogSink;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class UserService {
@@ -13,18 +18,66 @@ public class UserService {
         users.put(3L, new User("James", "Gosling"));
     }
 
+    /**
+     * @throws NoSuchElementException if there is no user with that id
+     */
     public User findUser(Long id) {
-        System.out.println("findUser: " + Thread.currentThread());
-        return Objects.requireNonNull(users.get(id));
+        AsyncLogSink.stdout().println("findUser: " + Thread.currentThread());
+        User user = users.get(id);
+        if (user == null) throw new NoSuchElementException("No user with id " + id);
+        return user;
+    }
+
+    /**
+     * Primitive overload, stores keyed by primitive ids override this to avoid boxing.
+     */
+    public User findUser(long id) {
+        return findUser(Long.valueOf(id));
+    }
+
+    /**
+     * Bulk lookup, one round trip for many ids. Ids that are not found are
+     * absent from the resulting map.
+     *
+     * @param ids the ids of the users
+     * @return the users that were found, keyed by id
+     */
+    public Map<Long, User> findUsers(Collection<Long> ids) {
+        AsyncLogSink.stdout().printf("findUsers(%d ids): %s%n", ids.size(), Thread.currentThread());
+        Map<Long, User> result = HashMap.newHashMap(ids.size());
+        for (Long id : ids) {
+            User user = users.get(id);
+            if (user != null) result.put(id, user);
+        }
+        return result;
+    }
+
+    public long[] findAllUserIds() {
+        AsyncLogSink.stdout().println("findAllUserIds: " + Thread.currentThread());
+        return users.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
     }
 
+    /**
+     * A slow lookup. If the request has a {@link Deadline} it gives up when the deadline
+     * passes instead of sleeping the full 40 seconds.
+     */
     public User findUserLongTime(long id) {
-        System.out.println("findUserLongTime: " + Thread.currentThread());
+        AsyncLogSink.stdout().println("findUserLongTime: " + Thread.currentThread());
         try {
-            Thread.sleep(40000);
+            Deadline.sleep(Duration.ofSeconds(40));
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
+        return lookup(id);
+    }
+
+    /**
+     * The final lookup of {@link #findUserLongTime(long)}, stores override this to answer it
+     * from their own data.
+     *
+     * @return the user, or null if there is none with that id
+     */
+    protected User lookup(long id) {
         return users.get(id);
     }
 }
@@ -0,0 +1,180 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps any Joiner and emits JFR events for the life of its scope: open, fork, subtask
+ * completion, cancel, join and timeout. Every event carries the scope name and the service
+ * the subtask called, e.g. {@code UserService}, so fan-out cost can be seen per service in
+ * a recording or live with {@link ScopeAnalytics}.
+ * <p>
+ * Use {@link #fork} and {@link #join} in place of the scope's own methods to tag subtasks
+ * and to see timeouts:
+ * <pre>{@code
+ * var joiner = ObservedJoiner.observe("findAllInvoicesByUser", Joiner.awaitAllSuccessfulOrThrow());
+ * try (var scope = StructuredTaskScope.open(joiner)) {
+ *     var user = joiner.fork(scope, "UserService", () -> userService.findUser(id));
+ *     joiner.join(scope);
+ * }
+ * }</pre>
+ * When the events are not enabled the overhead is a check per fork and completion. The join
+ * event spans {@link #join} only. Subtasks still running when {@link #join} returns, because
+ * the scope was cancelled or timed out, get no {@code onComplete}, their completion events are
+ * committed at that point with the state they had.
+ *
+ * @param <T> the result type of the subtasks
+ * @param <R> the result type of the wrapped Joiner
+ */
+@SuppressWarnings("preview")
+public class ObservedJoiner<T, R> implements StructuredTaskScope.Joiner<T, R> {
+    private static final AtomicLong SCOPE_IDS = new AtomicLong();
+
+    private final String scope;
+    private final long scopeId = SCOPE_IDS.incrementAndGet();
+    private final StructuredTaskScope.Joiner<T, ? extends R> delegate;
+    private final ScopeJoinEvent joinEvent = new ScopeJoinEvent();
+    private final Map<StructuredTaskScope.Subtask<?>, Fork> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger forks = new AtomicInteger();
+    // Only touched by the owner thread, onFork runs in the owner thread
+    private String nextService;
+
+    private record Fork(String service, SubtaskCompletedEvent event) {
+    }
+
+    private ObservedJoiner(String scope, StructuredTaskScope.Joiner<T, ? extends R> delegate) {
+        this.scope = scope;
+        this.delegate = delegate;
+        ScopeOpenEvent openEvent = new ScopeOpenEvent();
+        if (openEvent.isEnabled()) {
+            openEvent.scope = scope;
+            openEvent.scopeId = scopeId;
+            openEvent.commit();
+        }
+    }
+
+    public static <T, R> ObservedJoiner<T, R> observe(String scope, StructuredTaskScope.Joiner<T, ? extends R> delegate) {
+        return new ObservedJoiner<>(scope, delegate);
+    }
+
+    /**
+     * Forks the task in the scope, tagging its events with the given service.
+     */
+    public <U extends T> StructuredTaskScope.Subtask<U> fork(StructuredTaskScope<T, ?> scope,
+                                                             String service,
+                                                             Callable<? extends U> task) {
+        nextService = service;
+        try {
+            return scope.fork(task);
+        } finally {
+            nextService = null;
+        }
+    }
+
+    /**
+     * Joins the scope, emitting the join event and, if the scope timed out, the timeout event.
+     */
+    public <X> X join(StructuredTaskScope<?, X> scope) throws InterruptedException {
+        String outcome = "SUCCESS";
+        joinEvent.begin();
+        try {
+            return scope.join();
+        } catch (StructuredTaskScope.TimeoutException e) {
+            outcome = "TIMEOUT";
+            ScopeTimeoutEvent timeoutEvent = new ScopeTimeoutEvent();
+            if (timeoutEvent.isEnabled()) {
+                timeoutEvent.scope = this.scope;
+                timeoutEvent.scopeId = scopeId;
+                timeoutEvent.forks = forks.get();
+                timeoutEvent.commit();
+            }
+            throw e;
+        } catch (StructuredTaskScope.FailedException e) {
+            outcome = "FAILED";
+            throw e;
+        } catch (InterruptedException e) {
+            outcome = "INTERRUPTED";
+            throw e;
+        } finally {
+            joinEvent.end();
+            if (joinEvent.shouldCommit()) {
+                joinEvent.scope = this.scope;
+                joinEvent.scopeId = scopeId;
+                joinEvent.forks = forks.get();
+                joinEvent.outcome = outcome;
+                joinEvent.commit();
+            }
+            inFlight.forEach((subtask, fork) -> commitCompleted(subtask, fork));
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * @return the subtasks forked and not yet completed, none once {@link #join} returned
+     */
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    @Override
+    public boolean onFork(StructuredTaskScope.Subtask<? extends T> subtask) {
+        forks.incrementAndGet();
+        String service = nextService != null ? nextService : scope;
+        SubtaskForkEvent forkEvent = new SubtaskForkEvent();
+        if (forkEvent.isEnabled()) {
+            forkEvent.scope = scope;
+            forkEvent.scopeId = scopeId;
+            forkEvent.service = service;
+            forkEvent.commit();
+        }
+        SubtaskCompletedEvent completedEvent = new SubtaskCompletedEvent();
+        if (completedEvent.isEnabled()) {
+            completedEvent.begin();
+            inFlight.put(subtask, new Fork(service, completedEvent));
+        }
+        boolean cancel = delegate.onFork(subtask);
+        if (cancel) cancelled(service, subtask);
+        return cancel;
+    }
+
+    @Override
+    public boolean onComplete(StructuredTaskScope.Subtask<? extends T> subtask) {
+        Fork fork = inFlight.remove(subtask);
+        if (fork != null) commitCompleted(subtask, fork);
+        boolean cancel = delegate.onComplete(subtask);
+        if (cancel) cancelled(fork != null ? fork.service() : scope, subtask);
+        return cancel;
+    }
+
+    @Override
+    public R result() throws Throwable {
+        return delegate.result();
+    }
+
+    private void commitCompleted(StructuredTaskScope.Subtask<?> subtask, Fork fork) {
+        SubtaskCompletedEvent completedEvent = fork.event();
+        completedEvent.end();
+        if (completedEvent.shouldCommit()) {
+            completedEvent.scope = scope;
+            completedEvent.scopeId = scopeId;
+            completedEvent.service = fork.service();
+            completedEvent.state = subtask.state().name();
+            completedEvent.commit();
+        }
+    }
+
+    private void cancelled(String service, StructuredTaskScope.Subtask<? extends T> subtask) {
+        ScopeCancelEvent cancelEvent = new ScopeCancelEvent();
+        if (cancelEvent.isEnabled()) {
+            cancelEvent.scope = scope;
+            cancelEvent.scopeId = scopeId;
+            cancelEvent.service = service;
+            cancelEvent.state = subtask.state().name();
+            cancelEvent.commit();
+        }
+    }
+}
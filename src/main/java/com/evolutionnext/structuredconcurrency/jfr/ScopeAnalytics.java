@@ -0,0 +1,124 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import com.evolutionnext.structuredconcurrency.LatencyHistogram;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Consumes the events emitted by {@link ObservedJoiner} in process, with a JFR
+ * {@link RecordingStream}, and keeps rolling statistics: subtask latency per service and
+ * fork, cancel and timeout counts and join latency per scope. Every {@code window} the
+ * current statistics become the reported ones and a fresh window starts, so the numbers
+ * describe recent traffic and no dump file has to be analyzed.
+ */
+public class ScopeAnalytics implements AutoCloseable {
+    private final RecordingStream stream;
+    private final long windowNanos;
+    private volatile Window current = new Window(System.nanoTime());
+    private volatile Window previous;
+
+    public record ServiceStats(LatencyHistogram.Summary subtaskLatency) {
+    }
+
+    public record ScopeStats(long forks, double forksPerSecond, long cancels, long timeouts,
+                             LatencyHistogram.Summary joinLatency) {
+    }
+
+    private static final class ScopeCounters {
+        private final LongAdder forks = new LongAdder();
+        private final LongAdder cancels = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LatencyHistogram joins = new LatencyHistogram();
+    }
+
+    private static final class Window {
+        private final long startedAt;
+        private volatile long endedAt;
+        private final Map<String, LatencyHistogram> services = new ConcurrentHashMap<>();
+        private final Map<String, ScopeCounters> scopes = new ConcurrentHashMap<>();
+
+        private Window(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        private ScopeCounters scope(RecordedEvent event) {
+            return scopes.computeIfAbsent(event.getString("scope"), _ -> new ScopeCounters());
+        }
+
+        private double seconds() {
+            long end = endedAt == 0 ? System.nanoTime() : endedAt;
+            return Math.max(1, end - startedAt) / 1e9;
+        }
+    }
+
+    public ScopeAnalytics(Duration window) {
+        this.windowNanos = window.toNanos();
+        this.stream = new RecordingStream();
+        stream.enable(SubtaskForkEvent.NAME);
+        stream.enable(SubtaskCompletedEvent.NAME);
+        stream.enable(ScopeJoinEvent.NAME);
+        stream.enable(ScopeCancelEvent.NAME);
+        stream.enable(ScopeTimeoutEvent.NAME);
+        stream.onEvent(SubtaskForkEvent.NAME, event -> current.scope(event).forks.increment());
+        stream.onEvent(SubtaskCompletedEvent.NAME, event -> current.services
+            .computeIfAbsent(event.getString("service"), _ -> new LatencyHistogram())
+            .record(event.getDuration()));
+        stream.onEvent(ScopeJoinEvent.NAME, event -> current.scope(event).joins.record(event.getDuration()));
+        stream.onEvent(ScopeCancelEvent.NAME, event -> current.scope(event).cancels.increment());
+        stream.onEvent(ScopeTimeoutEvent.NAME, event -> current.scope(event).timeouts.increment());
+        stream.onFlush(this::rotateIfDue);
+        stream.setReuse(true);
+        stream.startAsync();
+    }
+
+    /**
+     * @return subtask latency per service, for the last complete window, or the current one
+     * if no window has completed yet
+     */
+    public Map<String, ServiceStats> services() {
+        Map<String, ServiceStats> result = new TreeMap<>();
+        reported().services.forEach((service, histogram) ->
+            result.put(service, new ServiceStats(histogram.summary())));
+        return result;
+    }
+
+    /**
+     * @return fork rate, cancels, timeouts and join latency per scope, for the last complete
+     * window, or the current one if no window has completed yet
+     */
+    public Map<String, ScopeStats> scopes() {
+        Window window = reported();
+        Map<String, ScopeStats> result = new TreeMap<>();
+        window.scopes.forEach((scope, counters) -> {
+            long forks = counters.forks.sum();
+            result.put(scope, new ScopeStats(forks, forks / window.seconds(), counters.cancels.sum(),
+                counters.timeouts.sum(), counters.joins.summary()));
+        });
+        return result;
+    }
+
+    private Window reported() {
+        Window window = previous;
+        return window != null ? window : current;
+    }
+
+    private void rotateIfDue() {
+        long now = System.nanoTime();
+        Window window = current;
+        if (now - window.startedAt < windowNanos) return;
+        window.endedAt = now;
+        previous = window;
+        current = new Window(now);
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
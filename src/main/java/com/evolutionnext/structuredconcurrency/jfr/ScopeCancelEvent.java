@@ -0,0 +1,29 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(ScopeCancelEvent.NAME)
+@Label("Scope Cancel")
+@Description("The Joiner of a StructuredTaskScope cancelled the scope")
+@Category({"Structured Concurrency"})
+@StackTrace(false)
+class ScopeCancelEvent extends Event {
+    static final String NAME = "com.evolutionnext.ScopeCancel";
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Scope Id")
+    long scopeId;
+
+    @Label("Trigger Service")
+    String service;
+
+    @Label("Trigger State")
+    String state;
+}
@@ -0,0 +1,32 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans from the opening of a scope until its join returns or throws.
+ */
+@Name(ScopeJoinEvent.NAME)
+@Label("Scope Join")
+@Description("The owner of a StructuredTaskScope joined, the duration runs from the opening of the scope")
+@Category({"Structured Concurrency"})
+@StackTrace(false)
+class ScopeJoinEvent extends Event {
+    static final String NAME = "com.evolutionnext.ScopeJoin";
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Scope Id")
+    long scopeId;
+
+    @Label("Forks")
+    int forks;
+
+    @Label("Outcome")
+    String outcome;
+}
@@ -0,0 +1,23 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(ScopeOpenEvent.NAME)
+@Label("Scope Open")
+@Description("A StructuredTaskScope was opened")
+@Category({"Structured Concurrency"})
+@StackTrace(false)
+class ScopeOpenEvent extends Event {
+    static final String NAME = "com.evolutionnext.ScopeOpen";
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Scope Id")
+    long scopeId;
+}
@@ -0,0 +1,26 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(ScopeTimeoutEvent.NAME)
+@Label("Scope Timeout")
+@Description("A StructuredTaskScope timed out before its subtasks completed")
+@Category({"Structured Concurrency"})
+@StackTrace(false)
+class ScopeTimeoutEvent extends Event {
+    static final String NAME = "com.evolutionnext.ScopeTimeout";
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Scope Id")
+    long scopeId;
+
+    @Label("Forks")
+    int forks;
+}
@@ -0,0 +1,32 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans from the fork of a subtask until it completes.
+ */
+@Name(SubtaskCompletedEvent.NAME)
+@Label("Subtask Completed")
+@Description("A subtask of a StructuredTaskScope completed, the duration runs from its fork")
+@Category({"Structured Concurrency"})
+@StackTrace(false)
+class SubtaskCompletedEvent extends Event {
+    static final String NAME = "com.evolutionnext.SubtaskCompleted";
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Scope Id")
+    long scopeId;
+
+    @Label("Service")
+    String service;
+
+    @Label("State")
+    String state;
+}
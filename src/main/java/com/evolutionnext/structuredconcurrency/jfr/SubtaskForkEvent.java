@@ -0,0 +1,26 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name(SubtaskForkEvent.NAME)
+@Label("Subtask Fork")
+@Description("A subtask was forked in a StructuredTaskScope")
+@Category({"Structured Concurrency"})
+@StackTrace(false)
+class SubtaskForkEvent extends Event {
+    static final String NAME = "com.evolutionnext.SubtaskFork";
+
+    @Label("Scope")
+    String scope;
+
+    @Label("Scope Id")
+    long scopeId;
+
+    @Label("Service")
+    String service;
+}
@@ -0,0 +1,219 @@
+package com.evolutionnext.virtualthreads;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A logging sink for code running on many virtual threads. {@code System.out.printf} takes
+ * the PrintStream lock and writes to the file descriptor on every call, so a million
+ * virtual threads printing end up queued on one monitor. Here producers only format their
+ * record and add it to a lock-free queue. A single writer thread encodes the records into
+ * a buffer and writes that buffer to a {@link FileChannel}, or to whatever {@code System.out}
+ * is at the time, when it is full or when the queue runs dry. An idle writer parks until a
+ * producer adds a record, so an idle sink costs no wakeups.
+ * <p>
+ * When {@code capacity} records are waiting, producers block until the writer catches up.
+ * Records are written in the order they were queued. Records logged after the sink is
+ * closed, e.g. by code still running in a shutdown hook, are dropped and counted, and
+ * records queued while the sink is closing may be lost.
+ */
+public class AsyncLogSink implements AutoCloseable {
+    private static final class StandardOut {
+        private static final AsyncLogSink INSTANCE = create();
+
+        private static AsyncLogSink create() {
+            AsyncLogSink sink = new AsyncLogSink(new CurrentStandardOut(64 * 1024), false, 64 * 1024, 1 << 20);
+            Runtime.getRuntime().addShutdownHook(new Thread(sink::close, "async-log-sink-shutdown"));
+            return sink;
+        }
+    }
+
+    /**
+     * Writes to the current {@code System.out}, so {@code System.setOut} redirects the sink
+     * too and a test runner capturing standard out sees the records.
+     */
+    private static final class CurrentStandardOut implements WritableByteChannel {
+        private final byte[] bytes;
+
+        private CurrentStandardOut(int bufferSize) {
+            this.bytes = new byte[bufferSize];
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            PrintStream out = System.out;
+            int written = 0;
+            while (source.hasRemaining()) {
+                int length = Math.min(source.remaining(), bytes.length);
+                source.get(bytes, 0, length);
+                out.write(bytes, 0, length);
+                written += length;
+            }
+            out.flush();
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    private final Semaphore space;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final WritableByteChannel channel;
+    private final boolean ownsChannel;
+    private final ByteBuffer buffer;
+    private final Thread writer;
+    private volatile boolean idle;
+    private volatile boolean closed;
+    private int buffered;
+
+    private AsyncLogSink(WritableByteChannel channel, boolean ownsChannel, int bufferSize, int capacity) {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.space = new Semaphore(capacity);
+        this.writer = Thread.ofPlatform().name("async-log-sink").daemon().start(this::drain);
+    }
+
+    /**
+     * @return the shared sink writing to standard out, flushed when the JVM exits
+     */
+    public static AsyncLogSink stdout() {
+        return StandardOut.INSTANCE;
+    }
+
+    /**
+     * Opens a sink appending to the given file, the file is closed with the sink.
+     */
+    public static AsyncLogSink open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new AsyncLogSink(channel, true, 64 * 1024, 1 << 20);
+    }
+
+    public void printf(String format, Object... args) {
+        enqueue(String.format(format, args));
+    }
+
+    public void println(String line) {
+        enqueue(line + System.lineSeparator());
+    }
+
+    /**
+     * @return the number of records written to the channel so far, records still in the
+     * writer's buffer are not counted
+     */
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return the number of records logged after the sink was closed, or lost with a batch
+     * the channel failed to write
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    private void enqueue(String record) {
+        if (closed) {
+            // Failing the caller over a log line would turn a shutdown into errors
+            dropped.increment();
+            return;
+        }
+        // Blocks a virtual thread without holding its carrier, close drains the queue so it cannot hang
+        space.acquireUninterruptibly();
+        queue.add(record);
+        // The add is seen by a writer about to park, or this sees the writer idle, never neither
+        if (idle) LockSupport.unpark(writer);
+    }
+
+    private void drain() {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        while (true) {
+            String record = queue.poll();
+            if (record == null) {
+                flush();
+                if (closed && queue.isEmpty()) return;
+                idle = true;
+                // Recheck after publishing idle, a producer that added before it was set did not unpark
+                if (queue.isEmpty() && !closed) LockSupport.park(this);
+                idle = false;
+                continue;
+            }
+            space.release();
+            append(encoder, record);
+            buffered++;
+        }
+    }
+
+    private void append(CharsetEncoder encoder, String record) {
+        CharBuffer chars = CharBuffer.wrap(record);
+        encoder.reset();
+        while (encoder.encode(chars, buffer, true) == CoderResult.OVERFLOW) {
+            flush();
+        }
+        while (encoder.flush(buffer) == CoderResult.OVERFLOW) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (buffer.position() == 0) return;
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written.add(buffered);
+        } catch (IOException e) {
+            // Dropping the batch is better than killing the writer and blocking every producer
+            System.err.println("AsyncLogSink dropped a batch: " + e);
+            dropped.add(buffered);
+        } finally {
+            buffered = 0;
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Writes every queued record and stops the writer.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+            if (ownsChannel) channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
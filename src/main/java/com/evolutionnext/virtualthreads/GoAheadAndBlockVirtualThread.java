@@ -1,5 +1,6 @@
 package com.evolutionnext.virtualthreads;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -20,6 +21,17 @@ public class GoAheadAndBlockVirtualThread {
 //        Thread.sleep(30000);
 
         long startTime = System.currentTimeMillis();
+        goAheadAndBlock(80, Duration.ofSeconds(5));
+        System.out.println("Done:" + (System.currentTimeMillis() - startTime));
+
+        Thread.sleep(10000);
+    }
+
+    /**
+     * Runs the tasks, each blocking its virtual thread for the given time, and returns once
+     * all of them have finished. PinningTest runs this to check it never pins a carrier.
+     */
+    static void goAheadAndBlock(int tasks, Duration block) throws InterruptedException {
         ThreadFactory tf = Thread
             .ofVirtual()
             .name("thread-go-and-block")
@@ -29,25 +41,19 @@ public class GoAheadAndBlockVirtualThread {
             //ExecutorService executorService = Executors.newFixedThreadPool(10)) {
             Stream<Callable<Integer>> callableStream =
                 Stream.iterate(0, integer -> integer + 1).map(i -> () -> {
-                    System.out.format("Process(%d) Started: inside of Thread " +
+                    AsyncLogSink.stdout().printf("Process(%d) Started: inside of Thread " +
                                       "%s\n",
                         i, Thread.currentThread());
-                    Thread.sleep(5000); //Block
-                    System.out.format("Process(%d) Finished: Inside of Thread" +
+                    Thread.sleep(block); //Block
+                    AsyncLogSink.stdout().printf("Process(%d) Finished: Inside of Thread" +
                                       " %s\n"
                         , i, Thread.currentThread());
                     return 100;
                 });
 
             List<Callable<Integer>> callables =
-                callableStream.limit(80).toList();
+                callableStream.limit(tasks).toList();
             executorService.invokeAll(callables);
-
-            System.out.println("Done:" + (System.currentTimeMillis() - startTime));
-
-
-            Thread.sleep(10000);
-            executorService.shutdown();
         }
     }
 }
@@ -6,12 +6,12 @@ package com.evolutionnext.virtualthreads;
 public class WeatherStation {
 
     protected static String getCity() {
-        System.out.printf("[%s] Getting city%n", Thread.currentThread());
+        AsyncLogSink.stdout().printf("[%s] Getting city%n", Thread.currentThread());
         return "Phoenix, Arizona";
     }
 
     protected static int getTemperature(String city) {
-        System.out.printf("[%s] Getting temperature for %s%n", Thread.currentThread(), city);
+        AsyncLogSink.stdout().printf("[%s] Getting temperature for %s%n", Thread.currentThread(), city);
         return 104;
     }
 }
@@ -0,0 +1,62 @@
+package com.evolutionnext.scopedvalues;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.StructuredTaskScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class RequestContextTest {
+    private final RequestContext context = new RequestContext("acme", "trace-1", "simon");
+
+    @Test
+    void testNothingIsBoundOutsideARequest() {
+        assertThatThrownBy(RequestContext::current).isInstanceOf(NoSuchElementException.class);
+        assertThat(RequestContext.find()).isEmpty();
+    }
+
+    @Test
+    void testForksInheritTheContext() throws InterruptedException {
+        List<RequestContext> seen = context.call(() -> {
+            try (var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.<RequestContext>allSuccessfulOrThrow())) {
+                for (int i = 0; i < 100; i++) {
+                    scope.fork(RequestContext::current);
+                }
+                return scope.join().map(StructuredTaskScope.Subtask::get).toList();
+            }
+        });
+
+        assertThat(seen).hasSize(100).containsOnly(context);
+    }
+
+    @Test
+    void testRebindingEndsWithItsScope() {
+        context.run(() -> {
+            context.withPrincipal("system").run(() ->
+                assertThat(RequestContext.current().principal()).isEqualTo("system"));
+            assertThat(RequestContext.current().principal()).isEqualTo("simon");
+        });
+    }
+
+    @Test
+    void testThreadLocalFacade() {
+        ThreadLocal<RequestContext> threadLocal = RequestContext.THREAD_LOCAL;
+        RequestContext legacy = new RequestContext("legacy", "trace-0", "batch");
+        threadLocal.set(legacy);
+        try {
+            assertThat(threadLocal.get()).isEqualTo(legacy);
+            context.run(() -> {
+                assertThat(threadLocal.get()).isEqualTo(context);
+                assertThatThrownBy(() -> threadLocal.set(legacy)).isInstanceOf(UnsupportedOperationException.class);
+            });
+            assertThat(threadLocal.get()).isEqualTo(legacy);
+        } finally {
+            threadLocal.remove();
+        }
+        assertThat(threadLocal.get()).isNull();
+    }
+}
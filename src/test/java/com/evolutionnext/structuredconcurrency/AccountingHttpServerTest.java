@@ -0,0 +1,153 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountingHttpServerTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newHttpClient();
+    private AccountingHttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = AccountingHttpServer.start(new AccountingService(new UserService(), new InvoiceService()),
+            new InetSocketAddress("localhost", 0), Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        client.close();
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testFindAllInvoicesByUser() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/users/2/invoices");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).contains("application/json");
+        JsonNode body = mapper.readTree(response.body());
+        assertThat(body.at("/user/firstName").asText()).isEqualTo("Sharat");
+        assertThat(body.get("invoices")).hasSize(3);
+        assertThat(body.at("/invoices/0/number").asText()).isEqualTo("402");
+        assertThat(body.at("/invoices/0/amount").asDouble()).isEqualTo(1120.0);
+    }
+
+    @Test
+    void testFindInvoiceSummaryByUser() throws IOException, InterruptedException {
+        HttpResponse<String> response = get("/users/2/summary");
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        JsonNode body = mapper.readTree(response.body());
+        assertThat(body.at("/user/firstName").asText()).isEqualTo("Sharat");
+        assertThat(body.get("count").asLong()).isEqualTo(3);
+        assertThat(body.get("total").asDouble()).isEqualTo(3560.0);
+        assertThat(body.at("/latest/number").asText()).isEqualTo("671");
+    }
+
+    @Test
+    void testFindAllUsers() throws IOException, InterruptedException {
+        JsonNode body = mapper.readTree(get("/users?ids=1,3").body());
+
+        assertThat(body).hasSize(2);
+        assertThat(body.at("/1/lastName").asText()).isEqualTo("Gosling");
+    }
+
+    @Test
+    void testErrors() throws IOException, InterruptedException {
+        assertThat(get("/users/90/invoices").statusCode()).isEqualTo(404);
+        assertThat(get("/users/abc/invoices").statusCode()).isEqualTo(400);
+        assertThat(get("/users").statusCode()).isEqualTo(400);
+        assertThat(mapper.readTree(get("/users/1/orders").body()).get("error").asText()).isEqualTo("Not found");
+        assertThat(get("/usersX").statusCode()).isEqualTo(404);
+        assertThat(get("/usersX/1/invoices").statusCode()).isEqualTo(404);
+    }
+
+    @Test
+    void testUnexpectedExceptionIsAnInternalError() throws IOException, InterruptedException {
+        server.close();
+        server = AccountingHttpServer.start(new AccountingService(new UserService(), new InvoiceService()) {
+            @Override
+            public UserInvoices findAllInvoicesByUser(Long id) {
+                throw new IllegalStateException("not a scope failure");
+            }
+        }, new InetSocketAddress("localhost", 0), Executors.newVirtualThreadPerTaskExecutor());
+
+        HttpResponse<String> response = get("/users/2/invoices");
+
+        assertThat(response.statusCode()).isEqualTo(500);
+        assertThat(mapper.readTree(response.body()).get("error").asText()).isEqualTo("Internal error");
+    }
+
+    @Test
+    void testFailureWhileEncodingIsAnInternalError() throws IOException, InterruptedException {
+        server.close();
+        server = AccountingHttpServer.start(new AccountingService(new UserService(), new InvoiceService()) {
+            @Override
+            public UserInvoices findAllInvoicesByUser(Long id) {
+                // The JSON writer fails on the missing user half way through the body
+                return new UserInvoices(null, List.of(new Invoice("402", 1120.00F)));
+            }
+        }, new InetSocketAddress("localhost", 0), Executors.newVirtualThreadPerTaskExecutor());
+
+        HttpResponse<String> response = get("/users/2/invoices");
+
+        assertThat(response.statusCode()).isEqualTo(500);
+        assertThat(mapper.readTree(response.body()).get("error").asText()).isEqualTo("Internal error");
+    }
+
+    @Test
+    void testNullPointerExceptionInASubtaskIsAnInternalError() throws IOException, InterruptedException {
+        server.close();
+        server = AccountingHttpServer.start(new AccountingService(new UserService() {
+            @Override
+            public User findUser(Long id) {
+                throw new NullPointerException("a bug, not an unknown id");
+            }
+        }, new InvoiceService()), new InetSocketAddress("localhost", 0), Executors.newVirtualThreadPerTaskExecutor());
+
+        assertThat(get("/users/2/invoices").statusCode()).isEqualTo(500);
+    }
+
+    @Test
+    void testTraceIdIsEchoed() throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(
+                URI.create("http://localhost:" + server.port() + "/users/1/invoices"))
+            .header("X-Trace-Id", "trace-42")
+            .build(), HttpResponse.BodyHandlers.discarding());
+
+        assertThat(response.headers().firstValue("X-Trace-Id")).contains("trace-42");
+        assertThat(get("/users/1/invoices").headers().firstValue("X-Trace-Id")).isNotEmpty();
+    }
+
+    @Test
+    void testLoadClient() throws InterruptedException {
+        AccountingLoadClient.Result result = AccountingLoadClient.run(
+            URI.create("http://localhost:" + server.port() + "/users/1/invoices"), 8, Duration.ofMillis(300));
+
+        assertThat(result.requests()).isPositive();
+        assertThat(result.errors()).isZero();
+        assertThat(result.requestsPerSecond()).isPositive();
+        assertThat(result.latency().count()).isEqualTo(result.requests());
+    }
+}
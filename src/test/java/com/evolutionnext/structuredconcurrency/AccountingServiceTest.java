@@ -3,10 +3,14 @@ package com.evolutionnext.structuredconcurrency;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -71,12 +75,34 @@ public class AccountingServiceTest {
         assertThat(result).isEqualTo(expected);
     }
 
+    @Test
+    void testStructuredConcurrencyWithHedgedUserService() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        UserInvoices userInvoices =
+            accountingService.findAllInvoicesByUserWithHedgedUserService(1L, Duration.ofMillis(200));
+        assertThat(userInvoices.user().firstName()).isEqualTo("Simon");
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+    }
+
     @Test
     void testStructuredConcurrencyWithAllSuccessfulOrThrow() throws ExecutionException, InterruptedException {
         List<User> allUsers = accountingService.findAllUsers(1L, 2L, 3L);
         assertThat(allUsers).hasSize(3);
     }
 
+    @Test
+    void testStructuredConcurrencyWithBoundedStreaming() throws InterruptedException {
+        List<User> users = new CopyOnWriteArrayList<>();
+        accountingService.streamAllUsers(users::add, 2, 1L, 2L, 3L, 1L, 2L, 3L);
+        assertThat(users).hasSize(6);
+    }
+
+    @Test
+    void testStructuredConcurrencyWithBoundedStreamingAndError() {
+        assertThatThrownBy(() -> accountingService.streamAllUsers(_ -> {}, 2, 1L, 90L, 2L))
+            .isInstanceOf(StructuredTaskScope.FailedException.class);
+    }
+
     @Test
     void testStructuredConcurrencyWithAwaitAll() throws InterruptedException {
         accountingService.reportAllUsers(1L, 2L, 3L);
@@ -95,5 +121,47 @@ public class AccountingServiceTest {
             .isInstanceOf(StructuredTaskScope.TimeoutException.class);
     }
 
+    /**
+     * An InvoiceService whose slow lookup computes instead of sleeping, clearing interrupts
+     * so only the scope's CancellationToken can stop it.
+     */
+    private static InvoiceService computingInvoiceService(AtomicBoolean stopped) {
+        return new InvoiceService() {
+            @Override
+            public List<Invoice> findAllInvoicesByUserLongTime(long id) {
+                CancellationToken token = CancellationToken.current();
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                while (System.nanoTime() < deadline) {
+                    Thread.interrupted();
+                    if (token.isCancelled()) {
+                        stopped.set(true);
+                        return List.of();
+                    }
+                    Thread.yield();
+                }
+                return List.of();
+            }
+        };
+    }
+
+    @Test
+    void testLosingComputationStopsOnceEitherWins() throws InterruptedException, ExecutionException {
+        AtomicBoolean stopped = new AtomicBoolean();
+        AccountingService service = new AccountingService(userService, computingInvoiceService(stopped));
+
+        assertThat(service.findAllEitherUserOrInvoices(1L)).isEqualTo("User: Simon Roberts");
+        assertThat(stopped).isTrue();
+    }
 
+    @Test
+    void testComputationStopsOnTimeout() {
+        AtomicBoolean stopped = new AtomicBoolean();
+        AccountingService service = new AccountingService(userService, computingInvoiceService(stopped));
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> service.findAllInvoicesWithTimeout(1L))
+            .isInstanceOf(StructuredTaskScope.TimeoutException.class);
+        assertThat(stopped).isTrue();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
 }
@@ -0,0 +1,57 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.StructuredTaskScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SuppressWarnings("preview")
+public class BalanceViewTest {
+
+    @Test
+    void testUnknownUserIsEmpty() {
+        assertThat(new BalanceView().summaryOf(42L)).isEqualTo(InvoiceSummary.EMPTY);
+    }
+
+    @Test
+    void testConcurrentUpdatesAreNotLost() throws InterruptedException {
+        BalanceView view = new BalanceView();
+        try (var scope = StructuredTaskScope.open()) {
+            for (int i = 0; i < 10_000; i++) {
+                long sequence = i;
+                scope.fork(() -> view.add(sequence % 4, sequence, new Invoice(String.valueOf(sequence), 1.5F)));
+            }
+            scope.join();
+        }
+
+        assertThat(view.userCount()).isEqualTo(4);
+        for (long user = 0; user < 4; user++) {
+            InvoiceSummary summary = view.summaryOf(user);
+            assertThat(summary.count()).isEqualTo(2500);
+            assertThat(summary.total()).isEqualTo(3750.0);
+            assertThat(summary.latest().number()).isEqualTo(String.valueOf(9996 + user));
+        }
+    }
+
+    @Test
+    void testLatestIsDecidedBySequence() {
+        BalanceView view = new BalanceView();
+        view.add(1L, 20, new Invoice("new", 2.0F));
+        view.add(1L, 10, new Invoice("old", 1.0F));
+
+        assertThat(view.summaryOf(1L)).isEqualTo(new InvoiceSummary(2, 3.0, new Invoice("new", 2.0F)));
+    }
+
+    @Test
+    void testSummaryOfListMatchesTheView() {
+        List<Invoice> invoices = List.of(new Invoice("402", 1120.00F), new Invoice("671", 1220.00F));
+        BalanceView view = new BalanceView();
+        for (int i = 0; i < invoices.size(); i++) {
+            view.add(7L, i, invoices.get(i));
+        }
+
+        assertThat(view.summaryOf(7L)).isEqualTo(InvoiceSummary.of(invoices));
+    }
+}
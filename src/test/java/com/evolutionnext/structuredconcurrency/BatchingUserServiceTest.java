@@ -0,0 +1,59 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BatchingUserServiceTest {
+
+    @Test
+    void testManyVirtualThreadsShareFewBatches() throws InterruptedException, ExecutionException {
+        Duration window = Duration.ofMillis(50);
+        BatchingUserService userService = new BatchingUserService(window, 10_000);
+        long start = System.nanoTime();
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<User>> futures = IntStream.range(0, 1000)
+                .mapToObj(i -> executorService.submit(() -> userService.findUser((long) (i % 3) + 1)))
+                .toList();
+            for (Future<User> future : futures) {
+                assertThat(future.get()).isNotNull();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        // Three keys never fill a batch, so each one stays open a whole window, one after another
+        assertThat(userService.batchCount()).isLessThanOrEqualTo(elapsed / window.toNanos() + 1);
+    }
+
+    @Test
+    void testBatchDispatchedWhenFull() {
+        BatchingUserService userService = new BatchingUserService(Duration.ofSeconds(30), 1);
+        assertThat(userService.findUser(2L).firstName()).isEqualTo("Sharat");
+        assertThat(userService.batchCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testMissingUserFails() {
+        BatchingUserService userService = new BatchingUserService();
+        assertThatThrownBy(() -> userService.findUser(90L))
+            .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void testFindAllUsersIsCoalesced() throws InterruptedException, ExecutionException {
+        BatchingUserService userService = new BatchingUserService(Duration.ofMillis(20), 256);
+        AccountingService accountingService = new AccountingService(userService, new InvoiceService());
+        List<User> allUsers = accountingService.findAllUsers(1L, 2L, 3L);
+        assertThat(allUsers).hasSize(3);
+        assertThat(userService.batchCount()).isLessThan(3);
+    }
+}
@@ -0,0 +1,65 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class BillingAggregatorTest {
+
+    /**
+     * User n has n % 7 + 1 invoices, invoice k of user n is worth n + k.
+     */
+    static class GeneratedInvoiceService extends InvoiceService {
+        @Override
+        public List<Invoice> findAllInvoicesByUser(Long id) {
+            return IntStream.range(0, (int) (id % 7) + 1)
+                .mapToObj(k -> new Invoice(id + "-" + k, id + k))
+                .toList();
+        }
+    }
+
+    @Test
+    void testAggregatesAcrossAllUsers() throws InterruptedException {
+        long[] userIds = LongStream.range(0, 10_000).toArray();
+        InvoiceService invoiceService = new GeneratedInvoiceService();
+        BillingReport report = new BillingAggregator(invoiceService)
+            .aggregate(userIds, invoice -> (int) (invoice.amount() % 120), 5);
+
+        double expectedTotal = 0;
+        long expectedCount = 0;
+        float expectedLargest = 0;
+        for (long id : userIds) {
+            for (Invoice invoice : invoiceService.findAllInvoicesByUser(id)) {
+                expectedTotal += invoice.amount();
+                expectedCount++;
+                expectedLargest = Math.max(expectedLargest, invoice.amount());
+            }
+        }
+        assertThat(report.userCount()).isEqualTo(10_000);
+        assertThat(report.invoiceCount()).isEqualTo(expectedCount);
+        assertThat(report.total()).isCloseTo(expectedTotal, within(0.01));
+        assertThat(report.aging()).hasSize(4);
+        assertThat(report.aging().stream().mapToLong(BillingReport.AgingBucket::count).sum()).isEqualTo(expectedCount);
+        assertThat(report.topInvoices()).hasSize(5);
+        assertThat(report.topInvoices().getFirst().invoice().amount()).isEqualTo(expectedLargest);
+        assertThat(report.topInvoices())
+            .extracting(ranked -> ranked.invoice().amount())
+            .isSortedAccordingTo((a, b) -> Float.compare(b, a));
+    }
+
+    @Test
+    void testBillingReportFromAccountingService() throws InterruptedException {
+        AccountingService accountingService = new AccountingService(new UserService(), new InvoiceService());
+        BillingReport report = accountingService.billingReport(_ -> 45, 2);
+        assertThat(report.userCount()).isEqualTo(3);
+        assertThat(report.invoiceCount()).isEqualTo(9);
+        assertThat(report.total()).isEqualTo(3 * 3560.0);
+        assertThat(report.aging().get(1)).isEqualTo(new BillingReport.AgingBucket("31-60 days", 9, 3 * 3560.0));
+        assertThat(report.topInvoices()).extracting(ranked -> ranked.invoice().amount()).containsOnly(1220.0F);
+    }
+}
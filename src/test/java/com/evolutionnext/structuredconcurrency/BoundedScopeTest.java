@@ -0,0 +1,31 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedScopeTest {
+
+    @Test
+    void testInFlightNeverExceedsTheCap() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        LongAdder sum = new LongAdder();
+        BoundedScope.forEach(IntStream.rangeClosed(1, 10_000).iterator(), 16, i -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            running.decrementAndGet();
+            return (long) i;
+        }, sum::add);
+        assertThat(sum.sum()).isEqualTo(50_005_000L);
+        assertThat(peak.get()).isLessThanOrEqualTo(16);
+    }
+}
@@ -0,0 +1,122 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CachingInvoiceServiceTest {
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws InterruptedException, ExecutionException {
+        CachingInvoiceService invoiceService = new CachingInvoiceService();
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<Invoice>>> futures = IntStream.range(0, 100)
+                .mapToObj(_ -> executorService.submit(() -> invoiceService.findAllInvoicesByUserLongTime(1L)))
+                .toList();
+            for (Future<List<Invoice>> future : futures) {
+                assertThat(future.get()).hasSize(3);
+            }
+        }
+        SingleFlightCache.Stats stats = invoiceService.invoicesByUserLongTimeStats();
+        assertThat(stats.loads()).isEqualTo(1);
+        assertThat(stats.hits() + stats.misses()).isEqualTo(100);
+        assertThat(stats.averageLoadTime()).isGreaterThanOrEqualTo(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void testEntriesExpireAfterTtl() throws InterruptedException {
+        CachingInvoiceService invoiceService = new CachingInvoiceService(10, Duration.ofMillis(50));
+        invoiceService.findAllInvoicesByUser(1L);
+        invoiceService.findAllInvoicesByUser(1L);
+        Thread.sleep(100);
+        invoiceService.findAllInvoicesByUser(1L);
+        SingleFlightCache.Stats stats = invoiceService.invoicesByUserStats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.loads()).isEqualTo(2);
+    }
+
+    @Test
+    void testCacheIsSizeBounded() throws InterruptedException {
+        SingleFlightCache<Long, String> cache = new SingleFlightCache<>(2, Duration.ofMinutes(1));
+        for (long i = 0; i < 10; i++) {
+            cache.get(i, String::valueOf);
+        }
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get(9L, _ -> "reloaded")).isEqualTo("9");
+        assertThat(cache.get(0L, _ -> "reloaded")).isEqualTo("reloaded");
+    }
+
+    @Test
+    void testReloadsAndInvalidationsDoNotGrowTheEvictionQueue() throws InterruptedException {
+        SingleFlightCache<Long, String> cache = new SingleFlightCache<>(10, Duration.ZERO);
+        for (int i = 0; i < 1_000; i++) {
+            cache.get(1L, String::valueOf);
+        }
+        assertThat(cache.stats().loads()).isEqualTo(1_000);
+        assertThat(cache.queuedForEviction()).isEqualTo(1);
+        assertThat(cache.retiredInEvictionQueue()).isLessThanOrEqualTo(10);
+
+        cache.invalidate(1L);
+        for (int i = 0; i < 100; i++) {
+            assertThatThrownBy(() -> cache.get(2L, _ -> {
+                throw new IllegalStateException("load failed");
+            })).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(cache.size()).isZero();
+        assertThat(cache.queuedForEviction()).isZero();
+        assertThat(cache.retiredInEvictionQueue()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    void testCancellingTheLoadingCallerDoesNotFailTheOthers() throws Exception {
+        SingleFlightCache<Long, String> cache = new SingleFlightCache<>(10, Duration.ofMinutes(1));
+        CountDownLatch loading = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Function<Long, String> loader = id -> {
+            if (calls.incrementAndGet() == 1) {
+                loading.countDown();
+                // Wrapped the way the services wrap it
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return "loaded";
+        };
+        try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> loadingCaller = executorService.submit(() -> cache.get(1L, loader));
+            loading.await();
+            Future<String> waitingCaller = executorService.submit(() -> cache.get(1L, loader));
+            Thread.sleep(100);
+            loadingCaller.cancel(true);
+
+            assertThat(waitingCaller.get(5, TimeUnit.SECONDS)).isEqualTo("loaded");
+        }
+        assertThat(cache.stats().loads()).isEqualTo(2);
+        assertThat(cache.stats().loadFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void testPlugsIntoAccountingService() throws InterruptedException {
+        CachingInvoiceService invoiceService = new CachingInvoiceService();
+        AccountingService accountingService = new AccountingService(new UserService(), invoiceService);
+        accountingService.findAllInvoicesByUser(1L);
+        UserInvoices userInvoices = accountingService.findAllInvoicesByUser(1L);
+        assertThat(userInvoices.invoices()).hasSize(3);
+        assertThat(invoiceService.invoicesByUserStats().hits()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,123 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class CancellableJoinerTest {
+    // Spinning subtasks get their own carrier, a virtual one would starve the others on a small machine
+    private static final Function<StructuredTaskScope.Configuration, StructuredTaskScope.Configuration> PLATFORM =
+        config -> config.withThreadFactory(Thread.ofPlatform().factory());
+
+    /**
+     * Spins until the token is cancelled, clearing interrupts so only the token can stop it.
+     */
+    private static String spinIgnoringInterrupts(CountDownLatch started, AtomicBoolean stopped) {
+        started.countDown();
+        CancellationToken token = CancellationToken.current();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (System.nanoTime() < deadline) {
+            Thread.interrupted();
+            if (token.isCancelled()) {
+                stopped.set(true);
+                return "cancelled";
+            }
+        }
+        return "finished";
+    }
+
+    @Test
+    void testTokenIsCancelledWhenTheJoinerShortCircuits() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean stopped = new AtomicBoolean();
+        var joiner = CancellableJoiner.wrap(StructuredTaskScope.Joiner.<String>anySuccessfulResultOrThrow());
+        long start = System.nanoTime();
+        try (var scope = StructuredTaskScope.open(joiner, PLATFORM)) {
+            joiner.fork(scope, () -> spinIgnoringInterrupts(started, stopped));
+            joiner.fork(scope, () -> {
+                started.await();
+                return "winner";
+            });
+            assertThat(joiner.join(scope)).isEqualTo("winner");
+        }
+
+        assertThat(stopped).isTrue();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testTokenIsCancelledOnTimeout() throws InterruptedException {
+        AtomicBoolean stopped = new AtomicBoolean();
+        var joiner = CancellableJoiner.wrap(StructuredTaskScope.Joiner.<String>awaitAllSuccessfulOrThrow());
+        var config = PLATFORM.andThen(c -> c.withTimeout(Duration.ofMillis(50)));
+        try (var scope = StructuredTaskScope.open(joiner, config)) {
+            joiner.fork(scope, () -> spinIgnoringInterrupts(new CountDownLatch(1), stopped));
+            assertThatThrownBy(() -> joiner.join(scope)).isInstanceOf(StructuredTaskScope.TimeoutException.class);
+        }
+
+        assertThat(stopped).isTrue();
+        assertThat(joiner.token().isCancelled()).isTrue();
+    }
+
+    @Test
+    void testNestedTokenIsCancelledWithItsParent() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean stopped = new AtomicBoolean();
+        var outer = CancellableJoiner.wrap(StructuredTaskScope.Joiner.<String>anySuccessfulResultOrThrow());
+        try (var scope = StructuredTaskScope.open(outer, PLATFORM)) {
+            outer.fork(scope, () -> {
+                var inner = CancellableJoiner.wrap(StructuredTaskScope.Joiner.<String>awaitAllSuccessfulOrThrow());
+                try (var innerScope = StructuredTaskScope.open(inner, PLATFORM)) {
+                    inner.fork(innerScope, () -> spinIgnoringInterrupts(started, stopped));
+                    inner.join(innerScope);
+                }
+                return "inner";
+            });
+            outer.fork(scope, () -> {
+                started.await();
+                return "winner";
+            });
+            assertThat(outer.join(scope)).isEqualTo("winner");
+        }
+
+        assertThat(stopped).isTrue();
+    }
+
+    @Test
+    void testCurrentOutsideAScopeOnlyReportsInterrupts() {
+        CancellationToken token = CancellationToken.current();
+        assertThat(token.isCancelled()).isFalse();
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThatThrownBy(token::throwIfCancelled).isInstanceOf(CancellationException.class);
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void testBillingAggregatorStopsWhenItsTokenIsCancelled() throws InterruptedException {
+        var joiner = CancellableJoiner.wrap(StructuredTaskScope.Joiner.<BillingReport>awaitAllSuccessfulOrThrow());
+        try (var scope = StructuredTaskScope.open(joiner)) {
+            joiner.fork(scope, () -> {
+                joiner.token().cancel();
+                return new BillingAggregator(new BillingAggregatorTest.GeneratedInvoiceService())
+                    .aggregate(new long[]{1, 2, 3}, _ -> 0, 1);
+            });
+            assertThatThrownBy(() -> joiner.join(scope))
+                .isInstanceOf(StructuredTaskScope.FailedException.class)
+                .hasCauseInstanceOf(CancellationException.class);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.assertj.core.api.Assertions.withinPercentage;
+
+public class ColumnarInvoiceStoreTest {
+
+    @Test
+    void testInvoicesAreGroupedByUser() {
+        InvoiceService invoiceService = new InvoiceService();
+        ColumnarInvoiceStore store = new ColumnarInvoiceStore.Builder()
+            .addAll(2L, invoiceService.findAllInvoicesByUser(2L))
+            .add(1L, new Invoice("900", 10.0F))
+            .addAll(1L, invoiceService.findAllInvoicesByUser(1L))
+            .build();
+
+        assertThat(store.size()).isEqualTo(7);
+        assertThat(store.userCount()).isEqualTo(2);
+        assertThat(store.findAllInvoicesByUser(1L)).containsExactly(
+            new Invoice("900", 10.0F),
+            new Invoice("402", 1120.00F),
+            new Invoice("1402", 1220.00F),
+            new Invoice("671", 1220.00F));
+        assertThat(store.findAllInvoicesByUser(2L)).isEqualTo(invoiceService.findAllInvoicesByUser(2L));
+        assertThat(store.findAllInvoicesByUser(3L)).isEmpty();
+        assertThat(store.totalForUser(1L)).isEqualTo(3570.0);
+        assertThat(store.totalForUser(3L)).isZero();
+    }
+
+    @Test
+    void testVectorTotalsMatchScalarTotals() {
+        Random random = new Random(42);
+        ColumnarInvoiceStore.Builder builder = new ColumnarInvoiceStore.Builder();
+        double expectedForUser7 = 0.0;
+        for (int i = 0; i < 1_000_003; i++) {
+            long userId = random.nextInt(1000);
+            float amount = random.nextInt(100_000) / 100.0F;
+            if (userId == 7) expectedForUser7 += amount;
+            builder.add(userId, new Invoice(String.valueOf(i % 5000), amount));
+        }
+        ColumnarInvoiceStore store = builder.build();
+
+        assertThat(store.total()).isCloseTo(store.totalScalar(), withinPercentage(0.00001));
+        assertThat(store.totalForUser(7L)).isCloseTo(expectedForUser7, within(0.01));
+        List<Invoice> invoices = store.findAllInvoicesByUser(7L);
+        assertThat(invoices).hasSize(store.invoiceCount(7L));
+    }
+}
@@ -0,0 +1,84 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.StructuredTaskScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class DeadlineTest {
+
+    @Test
+    void testNestedDeadlineCannotExtendTheOuterOne() {
+        Duration remaining = Deadline.within(Duration.ofMillis(300), () ->
+            Deadline.within(Duration.ofSeconds(30), () -> Deadline.current().orElseThrow().remaining()));
+
+        assertThat(remaining).isLessThanOrEqualTo(Duration.ofMillis(300));
+        assertThat(Deadline.current()).isEmpty();
+    }
+
+    @Test
+    void testSubtasksInheritTheDeadline() throws InterruptedException {
+        Duration remaining = Deadline.within(Duration.ofSeconds(2), () -> {
+            try (var scope = Deadline.open(StructuredTaskScope.Joiner.<Duration>anySuccessfulResultOrThrow())) {
+                scope.fork(() -> Deadline.current().orElseThrow().remaining());
+                return scope.join();
+            }
+        });
+
+        assertThat(remaining).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void testNestedScopeTimesOutWithTheRemainingBudget() {
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> Deadline.within(Duration.ofMillis(200), () -> {
+            try (var scope = Deadline.open(StructuredTaskScope.Joiner.awaitAllSuccessfulOrThrow())) {
+                scope.fork(() -> {
+                    Thread.sleep(10_000);
+                    return null;
+                });
+                return scope.join();
+            }
+        })).isInstanceOf(StructuredTaskScope.TimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testBoundedScopeTimesOutAtTheDeadline() {
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> Deadline.within(Duration.ofMillis(200), () -> {
+            BoundedScope.forEach(List.of(1, 2, 3).iterator(), 2, i -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return i;
+            }, _ -> { });
+            return null;
+        })).isInstanceOf(StructuredTaskScope.TimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testSlowServiceGivesUpAtTheDeadline() {
+        UserService userService = new UserService();
+        long start = System.nanoTime();
+
+        assertThatThrownBy(() -> Deadline.within(Duration.ofMillis(150), () -> userService.findUserLongTime(1L)))
+            .isInstanceOf(DeadlineExceededException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testExpiredDeadlineRefusesNewScopes() {
+        assertThatThrownBy(() -> Deadline.within(Duration.ZERO, () ->
+            Deadline.open(StructuredTaskScope.Joiner.awaitAll())))
+            .isInstanceOf(DeadlineExceededException.class);
+    }
+}
@@ -0,0 +1,119 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EncodedResponseCacheTest {
+    private final AtomicInteger invoiceLoads = new AtomicInteger();
+    private final InvoiceService invoiceService = new InvoiceService() {
+        @Override
+        public List<Invoice> findAllInvoicesByUser(Long id) {
+            invoiceLoads.incrementAndGet();
+            return super.findAllInvoicesByUser(id);
+        }
+    };
+    private final UserService userService = new UserService();
+    private final EncodedResponseCache cache = new EncodedResponseCache(userService, invoiceService);
+
+    private byte[] freshlyEncoded(long id) {
+        UserInvoices userInvoices = new UserInvoices(userService.findUser(id), invoiceService.findAllInvoicesByUser(id));
+        return AccountingJson.encode(json -> AccountingJson.writeUserInvoices(json, userInvoices));
+    }
+
+    @Test
+    void testCachedBytesMatchFreshlyEncodedJson() throws InterruptedException {
+        EncodedResponse response = cache.userInvoices(3L);
+
+        assertThat(response.toByteArray()).isEqualTo(freshlyEncoded(3L));
+        assertThat(response.length()).isEqualTo(response.toByteArray().length);
+    }
+
+    @Test
+    void testPartsAreReusedUntilInvalidated() throws InterruptedException {
+        cache.userInvoices(1L);
+        cache.userInvoices(1L);
+        assertThat(invoiceLoads).hasValue(1);
+        assertThat(cache.userStats().hits()).isEqualTo(1);
+
+        cache.invalidateInvoices(1L);
+        cache.userInvoices(1L);
+        assertThat(invoiceLoads).hasValue(2);
+        assertThat(cache.userStats().loads()).isEqualTo(1);
+    }
+
+    @Test
+    void testMissesAreShedByTheServiceGuards() {
+        ServiceGuard invoiceGuard = new ServiceGuard("InvoiceService",
+            new CircuitBreaker(1, Duration.ofSeconds(1), Duration.ofMinutes(1), 1),
+            new AdaptiveLimiter(10, 1, 10, 0.9, Duration.ofSeconds(1)));
+        InvoiceService failing = new InvoiceService() {
+            @Override
+            public List<Invoice> findAllInvoicesByUser(Long id) {
+                invoiceLoads.incrementAndGet();
+                throw new IllegalStateException("InvoiceService down");
+            }
+        };
+        EncodedResponseCache guarded = new EncodedResponseCache(new AccountingService(userService, failing,
+            ServiceGuard.withDefaults("UserService"), invoiceGuard));
+
+        assertThatThrownBy(() -> guarded.userInvoices(1L)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> guarded.userInvoices(2L)).hasCauseInstanceOf(ServiceUnavailableException.class);
+        assertThat(invoiceLoads).hasValue(1);
+    }
+
+    @Test
+    void testGatheringWrite(@TempDir Path directory) throws IOException, InterruptedException {
+        Path path = directory.resolve("response.json");
+        EncodedResponse response = cache.userInvoices(2L);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            response.writeTo(channel);
+        }
+        assertThat(Files.readAllBytes(path)).isEqualTo(response.toByteArray());
+    }
+
+    @Test
+    void testServerAnswersFromTheCache() throws IOException, InterruptedException {
+        AccountingService accountingService = new AccountingService(userService, invoiceService);
+        try (AccountingHttpServer server = AccountingHttpServer.start(accountingService, cache,
+            new InetSocketAddress("localhost", 0), Executors.newVirtualThreadPerTaskExecutor());
+             HttpClient client = HttpClient.newHttpClient()) {
+            URI uri = URI.create("http://localhost:" + server.port() + "/users/2/invoices");
+            for (int i = 0; i < 3; i++) {
+                HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+                assertThat(response.statusCode()).isEqualTo(200);
+                assertThat(response.headers().firstValueAsLong("Content-Length")).hasValue(response.body().length);
+                assertThat(response.body()).isEqualTo(freshlyEncoded(2L));
+            }
+            assertThat(cache.invoiceStats().loads()).isEqualTo(1);
+            // Failed loads are not cached, so each retry of an unknown id reaches the guarded lookup again
+            for (int i = 0; i < 20; i++) {
+                assertThat(client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() +
+                    "/users/" + (90 + i % 4) + "/invoices")).build(), HttpResponse.BodyHandlers.discarding())
+                    .statusCode()).isEqualTo(404);
+            }
+            HttpResponse<byte[]> known = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" +
+                server.port() + "/users/3/invoices")).build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertThat(known.statusCode()).isEqualTo(200);
+            assertThat(known.body()).isEqualTo(freshlyEncoded(3L));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.evolutionnext.structuredconcurrency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.openjdk.jol.info.GraphLayout;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Measures the bytes each live task costs, for a workload that holds {@code n} tasks alive at
+ * once, and compares them with a baseline kept as JSON.
+ * <p>
+ * Up to {@link #JOL_MAX} tasks the object graph of the tasks is walked with JOL, from
+ * {@link #HISTOGRAM_MIN} tasks on the live heap is read from a class histogram before and
+ * after, like {@code jcmd GC.class_histogram}. JOL sees exactly the objects reachable from
+ * the tasks, e.g. a {@code Subtask} but not the stack of its thread. The histogram sees
+ * everything the workload keeps alive, stacks included, but is only precise at scale. Either
+ * way the shared part, such as the scheduler or the scope of many subtasks, is left out:
+ * JOL reports the growth from one task to all of them, and the histogram is divided by
+ * {@code n}.
+ * <p>
+ * Footprint depends on the VM, so the baseline records the JDK and the header layout it was
+ * measured with and is only compared on the same.
+ */
+final class FootprintHarness {
+    static final int JOL_MAX = 100_000;
+    static final int HISTOGRAM_MIN = 100_000;
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    static {
+        // Lets JOL read the fields of java.lang.Thread and friends
+        System.setProperty("jol.magicFieldOffset", "true");
+    }
+
+    @FunctionalInterface
+    interface Workload {
+        /**
+         * Creates {@code n} tasks and keeps them alive until the returned {@link Live} is closed.
+         */
+        Live start(int n) throws Exception;
+    }
+
+    /**
+     * @param tasks   one object per task, the roots JOL walks
+     * @param release stops the tasks
+     */
+    record Live(Object[] tasks, AutoCloseable release) implements AutoCloseable {
+        @Override
+        public void close() throws Exception {
+            release.close();
+        }
+    }
+
+    record Measurement(String kind, int scale, String method, double bytesPerTask) {
+        String key() {
+            return kind + "/" + scale + "/" + method;
+        }
+    }
+
+    /**
+     * @param vm           the JDK and header layout the numbers were measured with
+     * @param bytesPerTask keyed by {@code kind/scale/method}
+     */
+    record Baseline(String vm, Map<String, Double> bytesPerTask) {
+
+        /**
+         * @return the baseline stored at {@code path}, empty when there is none
+         */
+        static Optional<Baseline> load(Path path) throws IOException {
+            if (!Files.exists(path)) return Optional.empty();
+            Baseline baseline = MAPPER.readValue(path.toFile(), Baseline.class);
+            return Optional.of(new Baseline(baseline.vm(), new TreeMap<>(baseline.bytesPerTask())));
+        }
+
+        void store(Path path) throws IOException {
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            MAPPER.writeValue(path.toFile(), this);
+        }
+
+        boolean isComparable() {
+            return vm.equals(currentVm());
+        }
+
+        /**
+         * @return a line for every measurement more than {@code tolerance} above its baseline
+         */
+        List<String> regressions(List<Measurement> measurements, double tolerance) {
+            List<String> regressions = new ArrayList<>();
+            for (Measurement measurement : measurements) {
+                Double expected = bytesPerTask.get(measurement.key());
+                if (expected != null && measurement.bytesPerTask() > expected * (1 + tolerance)) {
+                    regressions.add(String.format("%s: %.1f bytes per task, baseline %.1f, tolerance %.0f%%",
+                        measurement.key(), measurement.bytesPerTask(), expected, tolerance * 100));
+                }
+            }
+            return regressions;
+        }
+
+        /**
+         * @return the keys of the measurements this baseline has no number for
+         */
+        List<String> missing(List<Measurement> measurements) {
+            return measurements.stream()
+                .map(Measurement::key)
+                .filter(key -> !bytesPerTask.containsKey(key))
+                .toList();
+        }
+
+        /**
+         * Records the measurements, replacing the numbers they were measured for.
+         */
+        void record(List<Measurement> measurements) {
+            for (Measurement measurement : measurements) {
+                bytesPerTask.put(measurement.key(), Math.round(measurement.bytesPerTask() * 10) / 10.0);
+            }
+        }
+    }
+
+    private FootprintHarness() {
+    }
+
+    /**
+     * A task costs the same however many there are, so the bytes per task at a larger scale
+     * are compared with those at the smallest scale measured the same way. Needs no baseline,
+     * so it holds on any VM.
+     *
+     * @return a line for every measurement more than {@code tolerance} above the smallest scale
+     */
+    static List<String> growth(List<Measurement> measurements, double tolerance) {
+        Map<String, Measurement> smallest = new TreeMap<>();
+        for (Measurement measurement : measurements) {
+            smallest.merge(measurement.kind() + "/" + measurement.method(), measurement,
+                (a, b) -> a.scale() <= b.scale() ? a : b);
+        }
+        List<String> growth = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            Measurement expected = smallest.get(measurement.kind() + "/" + measurement.method());
+            if (measurement.bytesPerTask() > expected.bytesPerTask() * (1 + tolerance)) {
+                growth.add(String.format("%s: %.1f bytes per task, %.1f at %d tasks, tolerance %.0f%%",
+                    measurement.key(), measurement.bytesPerTask(), expected.bytesPerTask(), expected.scale(),
+                    tolerance * 100));
+            }
+        }
+        return growth;
+    }
+
+    static List<Measurement> measure(String kind, int n, Workload workload) throws Exception {
+        if (n < 2) throw new IllegalArgumentException("Needs at least two tasks");
+        boolean histogram = n >= HISTOGRAM_MIN;
+        long before = histogram ? liveHeapBytes() : 0;
+        long during = 0;
+        List<Measurement> measurements = new ArrayList<>();
+        try (Live live = workload.start(n)) {
+            if (histogram) {
+                during = liveHeapBytes();
+            }
+            if (n <= JOL_MAX) {
+                Object[] tasks = live.tasks();
+                long all = GraphLayout.parseInstance(tasks).totalSize();
+                long one = GraphLayout.parseInstance(tasks[0]).totalSize();
+                measurements.add(new Measurement(kind, n, "jol", (all - one) / (double) (n - 1)));
+            }
+        }
+        if (histogram) {
+            // What an earlier run left behind may still be freed while the tasks are alive, so
+            // the heap without the tasks is the lower of before and after them
+            long without = Math.min(before, liveHeapBytes());
+            measurements.addFirst(new Measurement(kind, n, "histogram", (during - without) / (double) n));
+        }
+        return measurements;
+    }
+
+    /**
+     * The live bytes on the heap after a full GC, from the {@code Total} line of the class histogram.
+     */
+    static long liveHeapBytes() {
+        // References cleared by one full GC only free what they held in the next
+        long previous = Long.MAX_VALUE;
+        long current = histogramTotal();
+        while (current < previous - previous / 1000) {
+            previous = current;
+            current = histogramTotal();
+        }
+        return current;
+    }
+
+    private static long histogramTotal() {
+        try {
+            String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                new Object[]{new String[0]}, new String[]{String[].class.getName()});
+            String total = histogram.lines()
+                .filter(line -> line.startsWith("Total"))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No total in class histogram"));
+            String[] columns = total.trim().split("\\s+");
+            return Long.parseLong(columns[columns.length - 1]);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not take a class histogram", e);
+        }
+    }
+
+    static String currentVm() {
+        return "jdk" + Runtime.version().feature()
+               + " " + flag("UseCompressedOops")
+               + " " + flag("UseCompactObjectHeaders");
+    }
+
+    private static String flag(String name) {
+        try {
+            String value = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class).getVMOption(name).getValue();
+            return (Boolean.parseBoolean(value) ? "+" : "-") + name;
+        } catch (IllegalArgumentException e) {
+            // The flag does not exist on this JDK
+            return "-" + name;
+        }
+    }
+
+    static String format(List<Measurement> measurements) {
+        StringBuilder out = new StringBuilder(String.format("%-14s %9s %-9s %14s%n", "kind", "tasks", "method", "bytes/task"));
+        for (Measurement measurement : measurements) {
+            out.append(String.format("%-14s %9d %-9s %14.1f%n", measurement.kind(), measurement.scale(),
+                measurement.method(), measurement.bytesPerTask()));
+        }
+        return out.toString();
+    }
+}
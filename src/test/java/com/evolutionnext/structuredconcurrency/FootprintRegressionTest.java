@@ -0,0 +1,265 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Bytes per virtual thread, per {@code Subtask}, per scope and per {@link UserInvoices}, the
+ * cost that bounds how many requests a node can hold in flight. Fails when a per-task cost
+ * grows with the number of tasks past {@code footprint.tolerance}, 10% by default, of its cost
+ * at the smallest scale, which needs no baseline. Also fails when it grows past the tolerance
+ * of the baseline in
+ * {@code footprint.baseline}, or when the baseline has no number for it. The comparison is
+ * skipped when there is no baseline or it was measured on another VM, unless
+ * {@code footprint.required} is set, as the {@code footprint} profile does, then either one
+ * fails the run. Every run writes its
+ * numbers to {@code target/footprint.json}, only {@code -Dfootprint.update=true} records
+ * them in the baseline, for the VM the run is on.
+ * <p>
+ * A plain build measures 1k and 10k tasks of each kind, {@code mvn -Pfootprint test} runs 1k,
+ * 100k and 1M with the heap to hold them. No baseline is committed yet, it has to be recorded
+ * on the JDK 25 the project targets, until then the profile fails on the missing baseline
+ * after the scale comparison has run.
+ */
+@SuppressWarnings("preview")
+public class FootprintRegressionTest {
+    private static final int[] SCALES = Arrays.stream(System.getProperty("footprint.scales", "1000,10000").split(","))
+        .mapToInt(Integer::parseInt).toArray();
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("footprint.tolerance", "0.10"));
+    private static final boolean UPDATE = Boolean.getBoolean("footprint.update");
+    private static final boolean REQUIRED = Boolean.getBoolean("footprint.required");
+    private static final Path BASELINE =
+        Path.of(System.getProperty("footprint.baseline", "src/test/resources/footprint-baseline.json"));
+    private static final Path REPORT = Path.of("target", "footprint.json");
+
+    private static Optional<FootprintHarness.Baseline> baseline;
+    private static final List<FootprintHarness.Measurement> measured = new ArrayList<>();
+
+    @BeforeAll
+    static void loadBaseline() throws Exception {
+        baseline = FootprintHarness.Baseline.load(BASELINE);
+    }
+
+    @AfterAll
+    static void storeResults() throws Exception {
+        System.out.print(FootprintHarness.format(measured));
+        FootprintHarness.Baseline report = new FootprintHarness.Baseline(FootprintHarness.currentVm(), new TreeMap<>());
+        report.record(measured);
+        report.store(REPORT);
+        if (UPDATE) {
+            FootprintHarness.Baseline updated = baseline.filter(FootprintHarness.Baseline::isComparable)
+                .orElseGet(() -> new FootprintHarness.Baseline(FootprintHarness.currentVm(), new TreeMap<>()));
+            updated.record(measured);
+            updated.store(BASELINE);
+        }
+    }
+
+    /**
+     * Where the tasks park. Static, so JOL does not walk from one task to all the others
+     * through it, as it would through the wait queue of a shared lock.
+     */
+    private static final Queue<Thread> PARKED = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger parkedCount = new AtomicInteger();
+    private static volatile boolean released;
+
+    private static void park() {
+        PARKED.add(Thread.currentThread());
+        parkedCount.incrementAndGet();
+        while (!released) {
+            LockSupport.park();
+        }
+    }
+
+    /**
+     * Returns once all {@code n} tasks are parked, so every stack is as deep as it gets
+     * before it is measured.
+     */
+    private static void awaitParked(int n) throws InterruptedException {
+        while (parkedCount.get() < n) {
+            Thread.sleep(1);
+        }
+        for (Thread thread : PARKED) {
+            while (thread.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static void unparkAll() {
+        released = true;
+        PARKED.forEach(LockSupport::unpark);
+    }
+
+    /**
+     * Called by every workload before it starts tasks, each scale parks afresh.
+     */
+    private static void resetParking() {
+        PARKED.clear();
+        parkedCount.set(0);
+        released = false;
+    }
+
+    private static FootprintHarness.Live parkedVirtualThreads(int n) throws InterruptedException {
+        resetParking();
+        Thread[] threads = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            threads[i] = Thread.ofVirtual().start(FootprintRegressionTest::park);
+        }
+        awaitParked(n);
+        return new FootprintHarness.Live(threads, () -> {
+            unparkAll();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+    }
+
+    /**
+     * Forks of one scope. A subtask leads JOL to its scope and from there to every thread of
+     * the scope, so these numbers are the subtask alone, its thread is in the virtual thread ones.
+     */
+    private static FootprintHarness.Live subtasksOfOneScope(int n) throws InterruptedException {
+        resetParking();
+        var scope = StructuredTaskScope.open(StructuredTaskScope.Joiner.awaitAll());
+        StructuredTaskScope.Subtask<?>[] subtasks = new StructuredTaskScope.Subtask<?>[n];
+        for (int i = 0; i < n; i++) {
+            subtasks[i] = scope.fork(FootprintRegressionTest::park);
+        }
+        awaitParked(n);
+        return new FootprintHarness.Live(subtasks, () -> {
+            unparkAll();
+            scope.join();
+            scope.close();
+        });
+    }
+
+    /**
+     * One scope per virtual thread, each owner parked inside its open scope. A scope references
+     * its owner, so these numbers include the owner thread.
+     */
+    private static FootprintHarness.Live openScopes(int n) throws InterruptedException {
+        resetParking();
+        List<AtomicReference<StructuredTaskScope<?, ?>>> holders = new ArrayList<>(n);
+        Thread[] owners = new Thread[n];
+        for (int i = 0; i < n; i++) {
+            // One holder per owner, sharing an array would link every scope to all the others
+            var holder = new AtomicReference<StructuredTaskScope<?, ?>>();
+            holders.add(holder);
+            owners[i] = Thread.ofVirtual().start(() -> {
+                try (var scope = StructuredTaskScope.open()) {
+                    holder.set(scope);
+                    park();
+                    scope.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        awaitParked(n);
+        Object[] scopes = holders.stream().map(AtomicReference::get).toArray();
+        return new FootprintHarness.Live(scopes, () -> {
+            unparkAll();
+            for (Thread owner : owners) {
+                owner.join();
+            }
+        });
+    }
+
+    /**
+     * Results shaped like {@link AccountingService#findAllInvoicesByUser(Long)} returns them,
+     * built directly so a million of them do not mean a million log lines.
+     */
+    private static FootprintHarness.Live userInvoices(int n) {
+        UserInvoices[] results = new UserInvoices[n];
+        for (int i = 0; i < n; i++) {
+            results[i] = new UserInvoices(new User("Sharat", "Chander"), List.of(
+                new Invoice("402", 1120.00F),
+                new Invoice("1402", 1220.00F),
+                new Invoice("671", 1220.00F)));
+        }
+        return new FootprintHarness.Live(results, () -> { });
+    }
+
+    private static void assertNoRegression(String kind, FootprintHarness.Workload workload) throws Exception {
+        List<FootprintHarness.Measurement> measurements = new ArrayList<>();
+        for (int scale : SCALES) {
+            measurements.addAll(FootprintHarness.measure(kind, scale, workload));
+        }
+        measured.addAll(measurements);
+        assertThat(measurements).allMatch(measurement -> measurement.bytesPerTask() > 0);
+        assertThat(FootprintHarness.growth(measurements, TOLERANCE)).isEmpty();
+        assumeFalse(UPDATE, "Recording a new baseline");
+        String noBaseline = "No baseline at " + BASELINE + ", record one with -Dfootprint.update=true";
+        if (REQUIRED) assertThat(baseline).as(noBaseline).isPresent();
+        assumeTrue(baseline.isPresent(), noBaseline);
+        FootprintHarness.Baseline expected = baseline.get();
+        String otherVm = "Baseline was measured on " + expected.vm() + ", this is " + FootprintHarness.currentVm();
+        if (REQUIRED) assertThat(expected.isComparable()).as(otherVm).isTrue();
+        assumeTrue(expected.isComparable(), otherVm);
+        assertThat(expected.missing(measurements))
+            .as("Measured without a baseline, record them with -Dfootprint.update=true")
+            .isEmpty();
+        assertThat(expected.regressions(measurements, TOLERANCE)).isEmpty();
+    }
+
+    @Test
+    void testVirtualThreadFootprint() throws Exception {
+        assertNoRegression("virtualThread", FootprintRegressionTest::parkedVirtualThreads);
+    }
+
+    @Test
+    void testSubtaskFootprint() throws Exception {
+        assertNoRegression("subtask", FootprintRegressionTest::subtasksOfOneScope);
+    }
+
+    @Test
+    void testScopeFootprint() throws Exception {
+        assertNoRegression("scope", FootprintRegressionTest::openScopes);
+    }
+
+    @Test
+    void testUserInvoicesFootprint() throws Exception {
+        assertNoRegression("userInvoices", FootprintRegressionTest::userInvoices);
+    }
+
+    @Test
+    void testRegressionPastToleranceIsReported() {
+        FootprintHarness.Baseline baseline = new FootprintHarness.Baseline(FootprintHarness.currentVm(),
+            new TreeMap<>(Map.of("scope/1000/jol", 100.0, "subtask/1000/jol", 100.0)));
+        List<FootprintHarness.Measurement> measurements = List.of(
+            new FootprintHarness.Measurement("scope", 1000, "jol", 111.0),
+            new FootprintHarness.Measurement("subtask", 1000, "jol", 109.0),
+            new FootprintHarness.Measurement("userInvoices", 1000, "jol", 500.0));
+
+        assertThat(baseline.regressions(measurements, 0.10)).singleElement().asString().startsWith("scope/1000/jol");
+        assertThat(FootprintHarness.growth(List.of(
+            new FootprintHarness.Measurement("scope", 10_000, "jol", 111.0),
+            new FootprintHarness.Measurement("scope", 1000, "jol", 100.0),
+            new FootprintHarness.Measurement("subtask", 1000, "jol", 100.0),
+            new FootprintHarness.Measurement("subtask", 10_000, "jol", 109.0)), 0.10))
+            .singleElement().asString().startsWith("scope/10000/jol");
+        assertThat(baseline.missing(measurements)).containsExactly("userInvoices/1000/jol");
+        baseline.record(measurements);
+        assertThat(baseline.bytesPerTask()).containsEntry("userInvoices/1000/jol", 500.0)
+            .containsEntry("scope/1000/jol", 111.0);
+    }
+}
@@ -0,0 +1,127 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class HedgingTest {
+
+    @Test
+    void testFastPrimaryNeverSendsTheHedge() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        String result = Hedging.hedge(() -> {
+            calls.incrementAndGet();
+            return "primary";
+        }, Duration.ofSeconds(5));
+        assertThat(result).isEqualTo("primary");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void testSlowPrimaryIsHedged() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        String result = Hedging.hedge(() -> {
+            Thread.sleep(40000);
+            return "primary";
+        }, () -> "backup", Duration.ofMillis(100));
+        assertThat(result).isEqualTo("backup");
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+    }
+
+    @Test
+    void testFailedPrimaryReleasesTheHedgeEarly() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        String result = Hedging.hedge(() -> {
+            throw new IllegalStateException("replica down");
+        }, () -> "backup", Duration.ofSeconds(30));
+        assertThat(result).isEqualTo("backup");
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+    }
+
+    @Test
+    void testBothFailing() {
+        assertThatThrownBy(() -> Hedging.hedge(() -> {
+            throw new IllegalStateException("replica down");
+        }, Duration.ofMillis(10)))
+            .isInstanceOf(StructuredTaskScope.FailedException.class)
+            .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testLatencyTrackerPercentile() {
+        LatencyTracker tracker = new LatencyTracker(100, Duration.ofMillis(250));
+        assertThat(tracker.percentile(0.95)).isEqualTo(Duration.ofMillis(250));
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(Duration.ofMillis(i));
+        }
+        assertThat(tracker.percentile(0.95)).isEqualTo(Duration.ofMillis(95));
+        assertThat(tracker.percentile(0.5)).isEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    void testTrackedP95HoldsForABimodalService() throws InterruptedException {
+        // Every tenth attempt is slow, so the p95 is in the slow mode, and the window starts out knowing it
+        LatencyTracker tracker = new LatencyTracker(100, Duration.ofMillis(100));
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(Duration.ofMillis(i % 10 == 0 ? 100 : 1));
+        }
+        AtomicInteger attempts = new AtomicInteger();
+        Callable<String> bimodal = () -> {
+            Thread.sleep(attempts.incrementAndGet() % 10 == 0 ? 10_000 : 1);
+            return "invoice";
+        };
+        for (int i = 0; i < 150; i++) {
+            assertThat(Hedging.hedge(bimodal, tracker)).isEqualTo("invoice");
+        }
+        // Each slow attempt loses to its hedge and is cancelled, so only its censored sample keeps the p95 up
+        assertThat(tracker.percentile(0.95)).isGreaterThanOrEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void testTrackedP95StaysPutUnderRepeatedHedges() throws InterruptedException {
+        assertP95StaysPut(Thread::sleep);
+    }
+
+    @Test
+    void testTrackedP95StaysPutWhenTheServiceWrapsTheInterrupt() throws InterruptedException {
+        // As UserService.findUserLongTime does, the interrupt flag is cleared by the time Hedging sees it
+        assertP95StaysPut(millis -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private interface Block {
+        void sleep(long millis) throws InterruptedException;
+    }
+
+    private static void assertP95StaysPut(Block block) throws InterruptedException {
+        LatencyTracker tracker = new LatencyTracker(100, Duration.ofMillis(50));
+        for (int i = 1; i <= 100; i++) {
+            tracker.record(Duration.ofMillis(i % 10 == 0 ? 50 : 1));
+        }
+        // Every tenth primary hangs and is cancelled once its hedge wins, another fails at once,
+        // a hedge always lands on an attempt that answers quickly
+        AtomicInteger attempts = new AtomicInteger();
+        Callable<String> service = () -> {
+            int attempt = attempts.incrementAndGet();
+            if (attempt % 10 == 5) throw new IllegalStateException("replica down");
+            block.sleep(attempt % 10 == 0 ? 10_000 : 1);
+            return "invoice";
+        };
+        for (int i = 0; i < 200; i++) {
+            assertThat(Hedging.hedge(service, tracker)).isEqualTo("invoice");
+        }
+        assertThat(tracker.percentile(0.95)).isEqualTo(Duration.ofMillis(50));
+    }
+}
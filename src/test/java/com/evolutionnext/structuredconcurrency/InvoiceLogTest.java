@@ -0,0 +1,267 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.StructuredTaskScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class InvoiceLogTest {
+
+    /**
+     * Delegates to a real channel, a positional write can be made to land its bytes and then
+     * throw, and force can be made to throw.
+     */
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        private volatile boolean failWrite;
+        private volatile boolean failForce;
+
+        private FailingChannel(Path path) throws IOException {
+            this.delegate = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            int written = delegate.write(src, position);
+            if (failWrite) throw new IOException("Simulated write failure");
+            return written;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) throw new IOException("Simulated fsync failure");
+            delegate.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static void appendConcurrently(InvoiceLog log, int users, int perUser) throws InterruptedException {
+        try (var scope = StructuredTaskScope.open()) {
+            for (int user = 0; user < users; user++) {
+                for (int i = 0; i < perUser; i++) {
+                    long userId = user;
+                    Invoice invoice = new Invoice(user + "-" + i, i);
+                    scope.fork(() -> log.append(userId, invoice));
+                }
+            }
+            scope.join();
+        }
+    }
+
+    @Test
+    void testConcurrentAppendsAreGroupCommitted(@TempDir Path directory) throws IOException, InterruptedException {
+        try (InvoiceLog log = InvoiceLog.open(directory.resolve("invoices.log"), Duration.ofMillis(2), 4096)) {
+            appendConcurrently(log, 10, 200);
+
+            assertThat(log.appendCount()).isEqualTo(2000);
+            assertThat(log.commitCount()).isLessThan(log.appendCount());
+            for (long user = 0; user < 10; user++) {
+                assertThat(log.findAllInvoicesByUser(user)).hasSize(200);
+            }
+            assertThat(log.findAllInvoicesByUser(3L)).contains(new Invoice("3-17", 17.0F));
+            assertThat(log.findAllInvoicesByUser(99L)).isEmpty();
+        }
+    }
+
+    @Test
+    void testReopenRebuildsIndexAndDropsTornRecord(@TempDir Path directory) throws IOException, InterruptedException {
+        Path path = directory.resolve("invoices.log");
+        long committed;
+        try (InvoiceLog log = InvoiceLog.open(path)) {
+            log.append(1L, new Invoice("402", 1120.00F));
+            log.append(2L, new Invoice("1402", 1220.00F));
+            log.append(1L, new Invoice("671", 1220.00F));
+            committed = log.size();
+        }
+        // A crash in the middle of the next record
+        Files.write(path, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (InvoiceLog log = InvoiceLog.open(path)) {
+            assertThat(log.size()).isEqualTo(committed);
+            assertThat(Files.size(path)).isEqualTo(committed);
+            assertThat(log.findAllInvoicesByUser(1L)).containsExactly(
+                new Invoice("402", 1120.00F), new Invoice("671", 1220.00F));
+            log.append(2L, new Invoice("900", 10.0F));
+            assertThat(log.findAllInvoicesByUser(2L)).hasSize(2);
+        }
+    }
+
+    @Test
+    void testAccountingServiceReadsFromTheLog(@TempDir Path directory) throws IOException, InterruptedException {
+        try (InvoiceLog log = InvoiceLog.open(directory.resolve("invoices.log"))) {
+            LoggedInvoiceService invoiceService = new LoggedInvoiceService(log);
+            invoiceService.addInvoice(1L, new Invoice("402", 1120.00F));
+            AccountingService accountingService = new AccountingService(new UserService(), invoiceService);
+
+            assertThat(accountingService.findAllInvoicesByUser(1L).invoices())
+                .isEqualTo(List.of(new Invoice("402", 1120.00F)));
+        }
+    }
+
+    @Test
+    void testSummaryIsMaintainedAndRebuiltOnReopen(@TempDir Path directory) throws IOException, InterruptedException {
+        Path path = directory.resolve("invoices.log");
+        InvoiceSummary expected = new InvoiceSummary(2, 2340.0, new Invoice("671", 1220.00F));
+        try (InvoiceLog log = InvoiceLog.open(path)) {
+            LoggedInvoiceService invoiceService = new LoggedInvoiceService(log);
+            invoiceService.addInvoice(1L, new Invoice("402", 1120.00F));
+            invoiceService.addInvoice(1L, new Invoice("671", 1220.00F));
+            AccountingService accountingService = new AccountingService(new UserService(), invoiceService);
+
+            assertThat(accountingService.findInvoiceSummaryByUser(1L).invoices()).isEqualTo(expected);
+        }
+
+        try (InvoiceLog log = InvoiceLog.open(path)) {
+            assertThat(log.summarizeInvoicesByUser(1L)).isEqualTo(expected);
+            assertThat(log.summarizeInvoicesByUser(2L)).isEqualTo(InvoiceSummary.EMPTY);
+        }
+    }
+
+    @Test
+    void testAppendAfterCloseFails(@TempDir Path directory) throws IOException {
+        InvoiceLog log = InvoiceLog.open(directory.resolve("invoices.log"));
+        log.close();
+
+        assertThatThrownBy(() -> log.append(1L, new Invoice("1", 1.0F))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testFailedWriteIsCutOffAndNotRecovered(@TempDir Path directory) throws IOException, InterruptedException {
+        Path path = directory.resolve("invoices.log");
+        FailingChannel channel = new FailingChannel(path);
+        try (InvoiceLog log = InvoiceLog.open(channel, Duration.ZERO, 4096)) {
+            log.append(1L, new Invoice("100", 1.0F));
+            channel.failWrite = true;
+            assertThatThrownBy(() -> log.append(1L, new Invoice("200", 2.0F)))
+                .isInstanceOf(UncheckedIOException.class);
+            assertThat(Files.size(path)).isEqualTo(log.size());
+
+            channel.failWrite = false;
+            log.append(1L, new Invoice("300", 3.0F));
+            assertThat(log.findAllInvoicesByUser(1L)).containsExactly(
+                new Invoice("100", 1.0F), new Invoice("300", 3.0F));
+        }
+
+        try (InvoiceLog log = InvoiceLog.open(path)) {
+            assertThat(log.findAllInvoicesByUser(1L)).containsExactly(
+                new Invoice("100", 1.0F), new Invoice("300", 3.0F));
+            assertThat(log.summarizeInvoicesByUser(1L).count()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void testFailedForceFailsTheLog(@TempDir Path directory) throws IOException, InterruptedException {
+        Path path = directory.resolve("invoices.log");
+        FailingChannel channel = new FailingChannel(path);
+        try (InvoiceLog log = InvoiceLog.open(channel, Duration.ZERO, 4096)) {
+            log.append(1L, new Invoice("100", 1.0F));
+            channel.failForce = true;
+            assertThatThrownBy(() -> log.append(1L, new Invoice("200", 2.0F)))
+                .isInstanceOf(UncheckedIOException.class);
+            assertThat(Files.size(path)).isEqualTo(log.size());
+
+            channel.failForce = false;
+            assertThatThrownBy(() -> log.append(1L, new Invoice("300", 3.0F)))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("failed");
+        }
+
+        try (InvoiceLog log = InvoiceLog.open(path)) {
+            assertThat(log.findAllInvoicesByUser(1L)).containsExactly(new Invoice("100", 1.0F));
+        }
+    }
+}
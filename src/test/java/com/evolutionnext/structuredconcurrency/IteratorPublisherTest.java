@@ -0,0 +1,172 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IteratorPublisherTest {
+
+    private static ColumnarInvoiceStore largeStore(int invoices) {
+        ColumnarInvoiceStore.Builder builder = new ColumnarInvoiceStore.Builder();
+        for (int i = 0; i < invoices; i++) {
+            builder.add(1L, new Invoice(String.valueOf(i), i));
+        }
+        return builder.add(2L, new Invoice("2", 2.0F)).build();
+    }
+
+    @Test
+    void testOnlyRequestedInvoicesAreProduced() {
+        AtomicInteger produced = new AtomicInteger();
+        Flow.Publisher<Integer> publisher = new IteratorPublisher<>(() -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return produced.incrementAndGet();
+            }
+        });
+        List<Integer> received = new ArrayList<>();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(2);
+            }
+
+            @Override
+            public void onNext(Integer item) {
+                received.add(item);
+                // Re-entrant request, must not recurse or overshoot
+                if (received.size() == 2) subscription.request(3);
+                if (received.size() == 5) subscription.cancel();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertThat(received).containsExactly(1, 2, 3, 4, 5);
+        assertThat(produced).hasValue(5);
+    }
+
+    @Test
+    void testNonPositiveRequestIsAnError() {
+        List<Throwable> errors = new ArrayList<>();
+        new IteratorPublisher<>(() -> List.of(1).iterator()).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(0);
+            }
+
+            @Override
+            public void onNext(Integer item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertThat(errors).singleElement().isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testNonPositiveRequestDuringOnNextIsSignalledAfterIt() {
+        List<String> signals = new ArrayList<>();
+        new IteratorPublisher<>(() -> List.of(1, 2, 3).iterator()).subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Integer item) {
+                signals.add("onNext " + item);
+                // A bad request from another thread while this one is inside onNext
+                Thread requester = Thread.ofPlatform().start(() -> subscription.request(-1));
+                try {
+                    requester.join();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                signals.add("onNext " + item + " returned");
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                signals.add(throwable.getClass().getSimpleName());
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add("onComplete");
+            }
+        });
+        assertThat(signals).containsExactly("onNext 1", "onNext 1 returned", "IllegalArgumentException");
+    }
+
+    @Test
+    void testFluxAndFlowableKeepBackpressure() {
+        ColumnarInvoiceStore store = largeStore(300_000);
+
+        Long fluxCount = ReactiveAdapters.toFlux(store.streamAllInvoicesByUser(1L))
+            .limitRate(64)
+            .count()
+            .block();
+        long flowableCount = ReactiveAdapters.toFlowable(store.streamAllInvoicesByUser(1L))
+            .rebatchRequests(64)
+            .count()
+            .blockingGet();
+
+        assertThat(fluxCount).isEqualTo(300_000L);
+        assertThat(flowableCount).isEqualTo(300_000L);
+        assertThat(ReactiveAdapters.toFlux(store.streamAllInvoicesByUser(1L)).take(3).collectList().block())
+            .extracting(Invoice::number)
+            .containsExactly("0", "1", "2");
+        assertThat(ReactiveAdapters.toFlux(store.streamAllInvoicesByUser(9L)).collectList().block()).isEmpty();
+    }
+
+    @Test
+    void testStreamingUserInvoices() throws InterruptedException {
+        ColumnarInvoiceStore store = largeStore(100_000);
+        InvoiceService invoiceService = new InvoiceService() {
+            @Override
+            public Flow.Publisher<Invoice> streamAllInvoicesByUser(long id) {
+                return store.streamAllInvoicesByUser(id);
+            }
+        };
+        AccountingService accountingService = new AccountingService(new UserService(), invoiceService);
+
+        StreamingUserInvoices userInvoices = accountingService.streamAllInvoicesByUser(1L);
+
+        assertThat(userInvoices.user()).isEqualTo(new User("Simon", "Roberts"));
+        assertThat(userInvoices.invoicesAsFlowable().map(Invoice::amount).reduce(0.0, (a, b) -> a + b).blockingGet())
+            .isEqualTo(IntStream.range(0, 100_000).asDoubleStream().sum());
+        assertThat(new AccountingService(new UserService(), new InvoiceService())
+            .streamAllInvoicesByUser(2L).invoicesAsFlux().collectList().block())
+            .isEqualTo(new InvoiceService().findAllInvoicesByUser(2L));
+    }
+}
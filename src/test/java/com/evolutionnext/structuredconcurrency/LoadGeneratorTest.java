@@ -0,0 +1,53 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LoadGeneratorTest {
+
+    @Test
+    void testRequestsFollowTheSchedule() throws InterruptedException {
+        LoadGenerator.Result result = LoadGenerator.run(
+            new LoadGenerator.Config(200, Duration.ofMillis(500), 4, DownstreamProfile.fast()));
+
+        assertThat(result.sent()).isEqualTo(100);
+        assertThat(result.errors()).isZero();
+        assertThat(result.responseTime().count()).isEqualTo(100);
+        assertThat(result.responseTime().p50()).isGreaterThanOrEqualTo(Duration.ofMillis(2));
+        assertThat(result.responseTime().max()).isGreaterThanOrEqualTo(result.serviceTime().max());
+        assertThat(result.peakDownstreamInFlight()).isGreaterThanOrEqualTo(4);
+        assertThat(LoadGenerator.format(result)).contains("fast");
+    }
+
+    @Test
+    void testFailingDownstreamIsCounted() throws InterruptedException {
+        DownstreamProfile alwaysFailing = new DownstreamProfile("down", Duration.ZERO, 0.0, Duration.ZERO, 1.0);
+        LoadGenerator.Result result = LoadGenerator.run(
+            new LoadGenerator.Config(100, Duration.ofMillis(200), 2, alwaysFailing));
+
+        assertThat(result.errors()).isEqualTo(result.sent());
+    }
+
+    @Test
+    void testSlowRequestsOverlapInsteadOfQueueing() throws InterruptedException {
+        DownstreamProfile slow = new DownstreamProfile("slow", Duration.ofMillis(100), 0.0, Duration.ZERO, 0.0);
+        long start = System.nanoTime();
+        LoadGenerator.Result result = LoadGenerator.run(new LoadGenerator.Config(100, Duration.ofMillis(300), 1, slow));
+
+        // Open loop, about rate * latency requests are in flight at once
+        assertThat(result.peakInFlight()).isGreaterThanOrEqualTo(5);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void testRatesAboveOnePerNanosecondAreRejected() {
+        assertThatThrownBy(() -> new LoadGenerator.Config(1_000_000_001, Duration.ofMillis(1), 1, DownstreamProfile.fast()))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(new LoadGenerator.Config(1_000_000_000, Duration.ofMillis(1), 1, DownstreamProfile.fast()).rate())
+            .isEqualTo(1_000_000_000);
+    }
+}
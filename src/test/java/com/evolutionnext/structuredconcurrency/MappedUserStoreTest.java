@@ -0,0 +1,78 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedUserStoreTest {
+
+    @Test
+    void testUsersSurviveReopening(@TempDir Path directory) throws IOException {
+        Path path = directory.resolve("users.bin");
+        MappedUserStore.write(path, Map.of(
+            1L, new User("Simon", "Roberts"),
+            2L, new User("Sharat", "Chander"),
+            -7L, new User("José", "Núñez")));
+
+        try (MappedUserStore store = MappedUserStore.open(path)) {
+            assertThat(store.size()).isEqualTo(3);
+            assertThat(store.findUser(2L)).isEqualTo(new User("Sharat", "Chander"));
+            assertThat(store.findUser(-7L)).isEqualTo(new User("José", "Núñez"));
+            assertThat(store.findUser(3L)).isNull();
+            assertThat(store.contains(1L)).isTrue();
+            assertThat(store.ids()).containsExactlyInAnyOrder(1L, 2L, -7L);
+        }
+    }
+
+    @Test
+    void testLargeStoreLookups(@TempDir Path directory) throws IOException {
+        int count = 1_000_000;
+        long[] ids = LongStream.range(0, count).map(i -> i * 31).toArray();
+        User[] users = new User[count];
+        for (int i = 0; i < count; i++) {
+            users[i] = new User("First" + i, "Last" + i);
+        }
+        Path path = directory.resolve("users.bin");
+        MappedUserStore.write(path, ids, users);
+
+        try (MappedUserStore store = MappedUserStore.open(path)) {
+            assertThat(store.size()).isEqualTo(count);
+            for (int i = 0; i < count; i += 997) {
+                assertThat(store.findUser(i * 31L)).isEqualTo(users[i]);
+                assertThat(store.contains(i * 31L + 1)).isFalse();
+            }
+        }
+    }
+
+    @Test
+    void testDuplicateIdsAreRejected(@TempDir Path directory) {
+        assertThatThrownBy(() -> MappedUserStore.write(directory.resolve("users.bin"),
+            new long[]{4L, 4L}, new User[]{new User("a", "b"), new User("c", "d")}))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testAccountingServiceOverMappedUsers(@TempDir Path directory) throws IOException, InterruptedException {
+        Path path = directory.resolve("users.bin");
+        MappedUserStore.write(path, Map.of(
+            1L, new User("Simon", "Roberts"),
+            2L, new User("Sharat", "Chander")));
+
+        try (MappedUserStore store = MappedUserStore.open(path)) {
+            MappedUserService userService = new MappedUserService(store);
+            AccountingService accountingService = new AccountingService(userService, new InvoiceService());
+
+            assertThat(userService.findAllUserIds()).containsExactly(1L, 2L);
+            assertThat(accountingService.findAllInvoicesByUser(1L).user()).isEqualTo(new User("Simon", "Roberts"));
+            assertThat(userService.findUsers(List.of(2L, 5L))).containsOnlyKeys(2L);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.StructuredTaskScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SuppressWarnings("preview")
+public class PartialResultJoinerTest {
+    private final AccountingService accountingService = new AccountingService(new UserService(), new InvoiceService());
+
+    @Test
+    void testSlowInvoicesAreMissingAtTheDeadline() throws InterruptedException {
+        long start = System.nanoTime();
+        PartialUserInvoices result = accountingService.findAllInvoicesByUserWithinBudget(1L, Duration.ofMillis(200));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+        assertThat(result.user()).isEqualTo(PartialUserInvoices.Part.fresh(new User("Simon", "Roberts")));
+        assertThat(result.invoices().status()).isEqualTo(PartialUserInvoices.Status.MISSING);
+        assertThat(result.isComplete()).isFalse();
+        assertThat(result.toUserInvoices()).isEmpty();
+    }
+
+    @Test
+    void testLastKnownInvoicesAreServedStale() throws InterruptedException {
+        List<Invoice> lastKnown = List.of(new Invoice("402", 1120.00F));
+        PartialUserInvoices result = accountingService.findAllInvoicesByUserWithinBudget(1L, Duration.ofMillis(200),
+            _ -> Optional.of(lastKnown));
+
+        assertThat(result.invoices()).isEqualTo(PartialUserInvoices.Part.stale(lastKnown));
+    }
+
+    @Test
+    void testCompleteResultReturnsWithoutWaitingForTheDeadline() throws InterruptedException {
+        InvoiceService fastInvoiceService = new InvoiceService() {
+            @Override
+            public List<Invoice> findAllInvoicesByUserLongTime(long id) {
+                return findAllInvoicesByUser(id);
+            }
+        };
+        AccountingService fast = new AccountingService(new UserService(), fastInvoiceService);
+        long start = System.nanoTime();
+
+        PartialUserInvoices result = fast.findAllInvoicesByUserWithinBudget(2L, Duration.ofSeconds(10));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(result.toUserInvoices()).contains(new UserInvoices(new User("Sharat", "Chander"),
+            fastInvoiceService.findAllInvoicesByUser(2L)));
+    }
+
+    @Test
+    void testQuorumCancelsTheStraggler() throws InterruptedException {
+        var joiner = PartialResultJoiner.<String>quorum(2);
+        try (var scope = StructuredTaskScope.open(joiner)) {
+            scope.fork(() -> "a");
+            scope.fork(() -> {
+                Thread.sleep(10_000);
+                return "slow";
+            });
+            scope.fork(() -> "b");
+            joiner.forkDeadline(scope, Duration.ofSeconds(10));
+
+            assertThat(scope.join()).extracting(StructuredTaskScope.Subtask::state).containsExactly(
+                StructuredTaskScope.Subtask.State.SUCCESS,
+                StructuredTaskScope.Subtask.State.UNAVAILABLE,
+                StructuredTaskScope.Subtask.State.SUCCESS);
+        }
+    }
+
+    @Test
+    void testFailuresDoNotFailTheScope() throws InterruptedException {
+        var joiner = PartialResultJoiner.<String>all();
+        try (var scope = StructuredTaskScope.open(joiner)) {
+            scope.fork(() -> "a");
+            scope.fork(() -> {
+                throw new IllegalStateException("down");
+            });
+            joiner.forkDeadline(scope, Duration.ofSeconds(10));
+
+            assertThat(scope.join()).extracting(StructuredTaskScope.Subtask::state).containsExactly(
+                StructuredTaskScope.Subtask.State.SUCCESS,
+                StructuredTaskScope.Subtask.State.FAILED);
+        }
+    }
+}
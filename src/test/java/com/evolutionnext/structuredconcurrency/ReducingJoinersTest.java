@@ -0,0 +1,109 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class ReducingJoinersTest {
+
+    private static final int FORKS = 100_000;
+
+    @Test
+    void testCountingAndSumming() throws InterruptedException {
+        try (var scope = StructuredTaskScope.open(ReducingJoiners.<Integer>counting())) {
+            for (int i = 0; i < FORKS; i++) {
+                scope.fork(() -> 1);
+            }
+            assertThat(scope.join()).isEqualTo(FORKS);
+        }
+        try (var scope = StructuredTaskScope.open(ReducingJoiners.<Integer>summingLong(Integer::longValue))) {
+            for (int i = 1; i <= FORKS; i++) {
+                int value = i;
+                scope.fork(() -> value);
+            }
+            assertThat(scope.join()).isEqualTo((long) FORKS * (FORKS + 1) / 2);
+        }
+    }
+
+    @Test
+    void testMinAndMax() throws InterruptedException {
+        try (var scope = StructuredTaskScope.open(ReducingJoiners.<Integer>maxLong(Integer::longValue))) {
+            for (int i = 0; i < 1000; i++) {
+                int value = i;
+                scope.fork(() -> value);
+            }
+            assertThat(scope.join()).isEqualTo(OptionalLong.of(999));
+        }
+        try (var scope = StructuredTaskScope.open(ReducingJoiners.<Integer>minLong(Integer::longValue))) {
+            assertThat(scope.join()).isEmpty();
+        }
+    }
+
+    @Test
+    void testCollecting() throws InterruptedException {
+        StructuredTaskScope.Joiner<User, Map<String, Long>> byLastName =
+            ReducingJoiners.collecting(Collectors.groupingBy(User::lastName, Collectors.counting()));
+        try (var scope = StructuredTaskScope.open(byLastName)) {
+            for (int i = 0; i < 1000; i++) {
+                User user = i % 2 == 0 ? new User("Simon", "Roberts") : new User("James", "Gosling");
+                scope.fork(() -> user);
+            }
+            assertThat(scope.join()).containsEntry("Roberts", 500L).containsEntry("Gosling", 500L);
+        }
+    }
+
+    @Test
+    void testFailureCancelsTheScope() {
+        assertThatThrownBy(() -> {
+            try (var scope = StructuredTaskScope.open(ReducingJoiners.<Integer>counting())) {
+                scope.fork(() -> 1);
+                scope.fork(() -> {
+                    throw new IllegalStateException("boom");
+                });
+                scope.join();
+            }
+        }).isInstanceOf(StructuredTaskScope.FailedException.class)
+            .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Compares what each Joiner retains once every subtask has completed. The built-in
+     * Joiner holds every Subtask and its result, the reducing Joiner only its adder.
+     */
+    @Test
+    void testFootprintAgainstBuiltInJoiner() throws InterruptedException {
+        System.setProperty("jol.magicFieldOffset", String.valueOf(true));
+
+        StructuredTaskScope.Joiner<Integer, Stream<StructuredTaskScope.Subtask<Integer>>> builtIn =
+            StructuredTaskScope.Joiner.allSuccessfulOrThrow();
+        try (var scope = StructuredTaskScope.open(builtIn)) {
+            for (int i = 0; i < FORKS; i++) {
+                scope.fork(() -> 3 + 3);
+            }
+            scope.join();
+        }
+        long builtInBytes = GraphLayout.parseInstance(builtIn).totalSize();
+
+        StructuredTaskScope.Joiner<Integer, Long> summing = ReducingJoiners.summingLong(Integer::longValue);
+        try (var scope = StructuredTaskScope.open(summing)) {
+            for (int i = 0; i < FORKS; i++) {
+                scope.fork(() -> 3 + 3);
+            }
+            scope.join();
+        }
+        long summingBytes = GraphLayout.parseInstance(summing).totalSize();
+
+        System.out.printf("Retained after %d forks: allSuccessfulOrThrow=%d bytes, summingLong=%d bytes%n",
+            FORKS, builtInBytes, summingBytes);
+        assertThat(summingBytes).isLessThan(builtInBytes / 100);
+    }
+}
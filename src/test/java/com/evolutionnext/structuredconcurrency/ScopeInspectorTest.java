@@ -0,0 +1,224 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.StructuredTaskScope;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SuppressWarnings("preview")
+public class ScopeInspectorTest {
+
+    /**
+     * An HTTP exchange thread in findAllInvoicesByUser, whose scope waits on a subtask in
+     * findUserLongTime and on a subtask that opened a nested scope.
+     */
+    private static InputStream dump(Instant time) {
+        String json = """
+            {
+              "threadDump": {
+                "formatVersion": 2,
+                "processId": "4242",
+                "time": "%s",
+                "runtimeVersion": "25",
+                "threadContainers": [
+                  {
+                    "container": "<root>",
+                    "parent": null,
+                    "owner": null,
+                    "threads": [
+                      {"tid": "1", "name": "main", "state": "WAITING", "stack": ["java.base\\/java.lang.Object.wait0(Native Method)"]}
+                    ],
+                    "threadCount": "1"
+                  },
+                  {
+                    "container": "java.util.concurrent.ThreadPerTaskExecutor@1",
+                    "parent": "<root>",
+                    "owner": null,
+                    "threads": [
+                      {
+                        "tid": "30",
+                        "name": "",
+                        "state": "WAITING",
+                        "virtual": true,
+                        "stack": [
+                          "java.base\\/java.util.concurrent.StructuredTaskScopeImpl.join(StructuredTaskScopeImpl.java:230)",
+                          "com.evolutionnext.structuredconcurrency.AccountingService.findAllInvoicesByUser(AccountingService.java:49)",
+                          "com.evolutionnext.structuredconcurrency.AccountingHttpServer.route(AccountingHttpServer.java:120)"
+                        ]
+                      }
+                    ],
+                    "threadCount": "1"
+                  },
+                  {
+                    "container": "java.util.concurrent.StructuredTaskScopeImpl@2",
+                    "parent": "java.util.concurrent.ThreadPerTaskExecutor@1",
+                    "owner": "30",
+                    "threads": [
+                      {
+                        "tid": "31",
+                        "name": "",
+                        "state": "TIMED_WAITING",
+                        "virtual": true,
+                        "stack": [
+                          "java.base\\/java.lang.VirtualThread.sleepNanos(VirtualThread.java:800)",
+                          "java.base\\/java.lang.Thread.sleep(Thread.java:590)",
+                          "com.evolutionnext.structuredconcurrency.Deadline.sleep(Deadline.java:95)",
+                          "com.evolutionnext.structuredconcurrency.UserService.findUserLongTime(UserService.java:40)"
+                        ]
+                      },
+                      {
+                        "tid": "32",
+                        "name": "",
+                        "state": "WAITING",
+                        "virtual": true,
+                        "parkBlocker": {"object": "java.util.concurrent.StructuredTaskScopeImpl@3"},
+                        "stack": [
+                          "java.base\\/jdk.internal.misc.Unsafe.park(Native Method)",
+                          "com.evolutionnext.structuredconcurrency.InvoiceService.findAllInvoicesByUser(InvoiceService.java:12)"
+                        ]
+                      }
+                    ],
+                    "threadCount": "2"
+                  },
+                  {
+                    "container": "lookupInvoices",
+                    "parent": "java.util.concurrent.StructuredTaskScopeImpl@2",
+                    "owner": "32",
+                    "threads": [
+                      {
+                        "tid": "33",
+                        "name": "",
+                        "state": "RUNNABLE",
+                        "virtual": true,
+                        "stack": ["com.evolutionnext.structuredconcurrency.ColumnarInvoiceStore.sum(ColumnarInvoiceStore.java:190)"]
+                      }
+                    ],
+                    "threadCount": "1"
+                  }
+                ]
+              }
+            }
+            """.formatted(time);
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testBuildsTheScopeTree() throws IOException {
+        Instant now = Instant.parse("2026-01-01T10:00:00Z");
+        ScopeTree tree = new ScopeInspector().inspect(dump(now));
+
+        assertThat(tree.capturedAt()).isEqualTo(now);
+        assertThat(tree.roots()).hasSize(1);
+        ScopeTree.Scope scope = tree.roots().getFirst();
+        assertThat(scope.owner()).isEqualTo("30");
+        assertThat(scope.openedIn()).contains("AccountingService.findAllInvoicesByUser");
+        assertThat(scope.subtasks()).extracting(ScopeTree.Subtask::tid).containsExactly("31", "32");
+
+        ScopeTree.Subtask longTime = scope.subtasks().get(0);
+        assertThat(longTime.stuck()).isTrue();
+        assertThat(longTime.at()).contains("Deadline.sleep");
+        assertThat(longTime.blockedOn()).contains("VirtualThread.sleepNanos");
+        ScopeTree.Subtask parked = scope.subtasks().get(1);
+        assertThat(parked.stuck()).isFalse();
+        assertThat(parked.blockedOn()).isEqualTo("java.util.concurrent.StructuredTaskScopeImpl@3");
+
+        assertThat(scope.children()).extracting(ScopeTree.Scope::name).containsExactly("lookupInvoices");
+        assertThat(scope.children().getFirst().openedIn()).contains("InvoiceService.findAllInvoicesByUser");
+        assertThat(tree.flagged()).containsExactly(scope);
+    }
+
+    @Test
+    void testScopesAndSubtasksAgeAcrossDumps() throws IOException {
+        ScopeInspector inspector = new ScopeInspector(Duration.ofSeconds(30), Duration.ofSeconds(10),
+            ScopeInspector.LONG_TIME_CALLS);
+        Instant first = Instant.parse("2026-01-01T10:00:00Z");
+        inspector.inspect(dump(first));
+        inspector.inspect(dump(first.plusSeconds(15)));
+        ScopeTree tree = inspector.inspect(dump(first.plusSeconds(45)));
+
+        ScopeTree.Scope scope = tree.roots().getFirst();
+        assertThat(scope.age()).isEqualTo(Duration.ofSeconds(45));
+        assertThat(scope.old()).isTrue();
+        assertThat(scope.subtasks()).allMatch(ScopeTree.Subtask::stuck);
+        assertThat(scope.children().getFirst().subtasks()).allMatch(ScopeTree.Subtask::stuck);
+
+        String flagged = tree.render(true, 1);
+        assertThat(flagged).contains("OLD", "STUCK", "... 1 more at com.evolutionnext.structuredconcurrency.InvoiceService");
+    }
+
+    @Test
+    void testFindsALiveScopeStuckInALongTimeCall() throws Exception {
+        UserService userService = new UserService();
+        Thread owner = Thread.ofVirtual().start(() -> {
+            try (var scope = StructuredTaskScope.open()) {
+                scope.fork(() -> userService.findUserLongTime(1L));
+                scope.join();
+            } catch (InterruptedException | StructuredTaskScope.FailedException _) {
+                // Interrupted by the test once it has seen the scope
+            }
+        });
+        try {
+            ScopeInspector inspector = new ScopeInspector();
+            String ownerId = String.valueOf(owner.threadId());
+            Optional<ScopeTree.Scope> found = Optional.empty();
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            // The subtask may not be asleep yet at the first dump
+            while (System.nanoTime() < deadline) {
+                found = inspector.capture().scopes()
+                    .filter(scope -> ownerId.equals(scope.owner()))
+                    .filter(scope -> scope.subtasks().stream()
+                        .anyMatch(subtask -> "TIMED_WAITING".equals(subtask.state())))
+                    .findFirst();
+                if (found.isPresent()) break;
+                Thread.sleep(50);
+            }
+
+            assertThat(found).isPresent();
+            ScopeTree.Scope scope = found.get();
+            assertThat(scope.openedIn()).contains("ScopeInspectorTest");
+            assertThat(scope.isFlagged()).isTrue();
+            assertThat(scope.subtasks()).singleElement().satisfies(subtask -> {
+                assertThat(subtask.stuck()).isTrue();
+                assertThat(subtask.at()).contains("Deadline.sleep");
+            });
+        } finally {
+            owner.interrupt();
+            owner.join();
+        }
+    }
+
+    @Test
+    void testDumpsThisJvmOverJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(ScopeInspector.OBJECT_NAME);
+        ScopeInspector.register(new ScopeInspector());
+        try {
+            String tree = (String) server.invoke(name, "dumpScopeTree", new Object[0], new String[0]);
+            assertThat(tree).startsWith("Scopes at ");
+            assertThat(server.getAttribute(name, "OldAfterSeconds")).isEqualTo(30L);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    void testEmptyDumpHasNoScopes() throws IOException {
+        InputStream json = new ByteArrayInputStream("""
+            {"threadDump": {"threadContainers": [{"container": "<root>", "parent": null, "owner": null, "threads": []}]}}
+            """.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(new ScopeInspector().inspect(json).roots()).isEqualTo(List.of());
+    }
+}
@@ -0,0 +1,132 @@
+package com.evolutionnext.structuredconcurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class ServiceGuardTest {
+    private static final long FAST = Duration.ofMillis(1).toNanos();
+    private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+    @Test
+    void testBreakerOpensAndRecovers() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(1), Duration.ofMillis(100), 1);
+
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess(FAST);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.phase()).isEqualTo(CircuitBreaker.Phase.CLOSED);
+        breaker.onSuccess(SLOW);
+        assertThat(breaker.phase()).isEqualTo(CircuitBreaker.Phase.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+
+        Thread.sleep(150);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.phase()).isEqualTo(CircuitBreaker.Phase.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onIgnored();
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onSuccess(FAST);
+        assertThat(breaker.phase()).isEqualTo(CircuitBreaker.Phase.CLOSED);
+    }
+
+    @Test
+    void testLimiterAdaptsToLatency() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 2, 6, 0.5, Duration.ofMillis(100));
+
+        for (int i = 0; i < 4; i++) assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        limiter.onSuccess(FAST);
+        assertThat(limiter.limit()).isEqualTo(5);
+        limiter.onSuccess(SLOW);
+        assertThat(limiter.limit()).isEqualTo(2);
+        limiter.onDropped();
+        assertThat(limiter.limit()).isEqualTo(2);
+        limiter.onIgnored();
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void testUnhealthyServiceFailsFast() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        UserService failingUserService = new UserService() {
+            @Override
+            public User findUser(Long id) {
+                calls.incrementAndGet();
+                throw new IllegalStateException("down");
+            }
+        };
+        ServiceGuard userGuard = new ServiceGuard("UserService",
+            new CircuitBreaker(2, Duration.ofSeconds(1), Duration.ofMinutes(1), 1),
+            new AdaptiveLimiter(10, 1, 10, 0.9, Duration.ofSeconds(1)));
+        AccountingService accountingService = new AccountingService(failingUserService, new InvoiceService(),
+            userGuard, ServiceGuard.withDefaults("InvoiceService"));
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> accountingService.findAllInvoicesByUserWithLoadShedding(1L))
+                .isInstanceOf(StructuredTaskScope.FailedException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        }
+        assertThatThrownBy(() -> accountingService.findAllInvoicesByUserWithLoadShedding(1L))
+            .isInstanceOf(StructuredTaskScope.FailedException.class)
+            .hasCauseInstanceOf(ServiceUnavailableException.class);
+
+        assertThat(calls).hasValue(2);
+        assertThat(userGuard.rejectedCount()).isEqualTo(1);
+        assertThat(userGuard.breaker().phase()).isEqualTo(CircuitBreaker.Phase.OPEN);
+    }
+
+    @Test
+    void testCancelledCallsDoNotCount() throws InterruptedException {
+        ServiceGuard guard = ServiceGuard.withDefaults("InvoiceService");
+        try (var scope = StructuredTaskScope.open()) {
+            scope.fork(guard.protect(() -> {
+                Thread.sleep(10_000);
+                return null;
+            }));
+            scope.fork(() -> {
+                throw new IllegalStateException("sibling failed");
+            });
+            assertThatThrownBy(scope::join).isInstanceOf(StructuredTaskScope.FailedException.class);
+        }
+
+        assertThat(guard.breaker().phase()).isEqualTo(CircuitBreaker.Phase.CLOSED);
+        assertThat(guard.limiter().inFlight()).isZero();
+        assertThat(guard.limiter().limit()).isEqualTo(1_000);
+    }
+
+    @Test
+    void testUnknownIdsDoNotOpenTheBreaker() throws InterruptedException {
+        ServiceGuard userGuard = ServiceGuard.withDefaults("UserService");
+        AccountingService accountingService = new AccountingService(new UserService(), new InvoiceService(),
+            userGuard, ServiceGuard.withDefaults("InvoiceService"));
+
+        for (int i = 0; i < 20; i++) {
+            assertThatThrownBy(() -> accountingService.findAllInvoicesByUserWithLoadShedding(90L))
+                .isInstanceOf(StructuredTaskScope.FailedException.class)
+                .hasCauseInstanceOf(NoSuchElementException.class);
+        }
+
+        assertThat(userGuard.breaker().phase()).isEqualTo(CircuitBreaker.Phase.CLOSED);
+        assertThat(userGuard.limiter().limit()).isEqualTo(1_000);
+        assertThat(accountingService.findAllInvoicesByUserWithLoadShedding(2L).user())
+            .isEqualTo(new User("Sharat", "Chander"));
+    }
+
+    @Test
+    void testHealthyServicePassesThrough() throws InterruptedException {
+        AccountingService accountingService = new AccountingService(new UserService(), new InvoiceService());
+        assertThat(accountingService.findAllInvoicesByUserWithLoadShedding(2L).user())
+            .isEqualTo(new User("Sharat", "Chander"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.evolutionnext.structuredconcurrency.jfr;
+
+import com.evolutionnext.structuredconcurrency.AccountingService;
+import com.evolutionnext.structuredconcurrency.InvoiceService;
+import com.evolutionnext.structuredconcurrency.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SuppressWarnings("preview")
+public class ScopeAnalyticsTest {
+
+    private ScopeAnalytics analytics;
+    private AccountingService accountingService;
+
+    @BeforeEach
+    void setUp() {
+        analytics = new ScopeAnalytics(Duration.ofMinutes(5));
+        accountingService = new AccountingService(new UserService(), new InvoiceService());
+    }
+
+    @AfterEach
+    void tearDown() {
+        analytics.close();
+    }
+
+    @Test
+    void testSubtaskLatencyPerService() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            accountingService.findAllInvoicesByUser(1L);
+        }
+        awaitUntil(() -> analytics.scopes().containsKey("findAllInvoicesByUser")
+                         && analytics.scopes().get("findAllInvoicesByUser").forks() == 20
+                         && analytics.services().containsKey("InvoiceService"));
+
+        ScopeAnalytics.ScopeStats scope = analytics.scopes().get("findAllInvoicesByUser");
+        assertThat(scope.joinLatency().count()).isEqualTo(10);
+        assertThat(scope.forksPerSecond()).isPositive();
+        assertThat(analytics.services().get("UserService").subtaskLatency().count()).isEqualTo(10);
+        assertThat(analytics.services().get("InvoiceService").subtaskLatency().count()).isEqualTo(10);
+    }
+
+    @Test
+    void testTimeoutIsCounted() throws InterruptedException {
+        assertThatThrownBy(() -> accountingService.findAllInvoicesWithTimeout(1L))
+            .isInstanceOf(StructuredTaskScope.TimeoutException.class);
+        awaitUntil(() -> analytics.scopes().containsKey("findAllInvoicesWithTimeout")
+                         && analytics.scopes().get("findAllInvoicesWithTimeout").timeouts() == 1);
+    }
+
+    @Test
+    void testSubtasksLeftRunningByACancelledScopeAreCommitted() throws InterruptedException {
+        var joiner = ObservedJoiner.observe("cancelledScope", StructuredTaskScope.Joiner.awaitAllSuccessfulOrThrow());
+        try (var scope = StructuredTaskScope.open(joiner)) {
+            joiner.fork(scope, "SlowService", () -> {
+                Thread.sleep(10_000);
+                return null;
+            });
+            joiner.fork(scope, "FailingService", () -> {
+                throw new IllegalStateException("down");
+            });
+            assertThatThrownBy(() -> joiner.join(scope)).isInstanceOf(StructuredTaskScope.FailedException.class);
+            assertThat(joiner.inFlightCount()).isZero();
+        }
+        awaitUntil(() -> analytics.services().containsKey("SlowService")
+                         && analytics.services().get("SlowService").subtaskLatency().count() == 1);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+}
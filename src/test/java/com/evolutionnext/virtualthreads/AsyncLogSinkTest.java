@@ -0,0 +1,97 @@
+package com.evolutionnext.virtualthreads;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncLogSinkTest {
+
+    @Test
+    void testManyVirtualThreadsLogging(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("virtual-threads.log");
+        try (AsyncLogSink sink = AsyncLogSink.open(file);
+             ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+            IntStream.range(0, 100_000).forEach(i ->
+                executorService.submit(() -> sink.printf("Task %d on %s%n", i, Thread.currentThread())));
+        }
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(100_000);
+        assertThat(lines).allMatch(line -> line.startsWith("Task "));
+    }
+
+    @Test
+    void testFloodDrainsWithoutClose(@TempDir Path directory) throws IOException, InterruptedException {
+        Path file = directory.resolve("flood.log");
+        try (AsyncLogSink sink = AsyncLogSink.open(file)) {
+            // Bursts with pauses between them, so the writer keeps going idle while producers race it
+            for (int round = 0; round < 50; round++) {
+                try (ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()) {
+                    IntStream.range(0, 64).forEach(producer -> executorService.submit(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            sink.println("Producer " + producer);
+                        }
+                    }));
+                }
+                Thread.sleep(1);
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (sink.writtenCount() < 50 * 64 * 100 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertThat(sink.writtenCount()).isEqualTo(50 * 64 * 100);
+            assertThat(Files.readAllLines(file)).hasSize(50 * 64 * 100);
+        }
+    }
+
+    @Test
+    void testRecordsLargerThanTheBuffer(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("large.log");
+        String large = "λ".repeat(100_000);
+        try (AsyncLogSink sink = AsyncLogSink.open(file)) {
+            sink.println(large);
+            sink.println("after");
+        }
+        assertThat(Files.readAllLines(file)).containsExactly(large, "after");
+    }
+
+    @Test
+    void testRecordsAfterCloseAreDropped(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("closed.log");
+        AsyncLogSink sink = AsyncLogSink.open(file);
+        sink.println("before");
+        sink.close();
+        sink.println("after");
+        assertThat(sink.droppedCount()).isEqualTo(1);
+        assertThat(Files.readAllLines(file)).containsExactly("before");
+    }
+
+    @Test
+    void testStdoutFollowsSystemSetOut() throws InterruptedException {
+        PrintStream original = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            AsyncLogSink.stdout().println("redirected");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!captured.toString(StandardCharsets.UTF_8).contains("redirected") && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        } finally {
+            System.setOut(original);
+        }
+        assertThat(captured.toString(StandardCharsets.UTF_8)).contains("redirected");
+    }
+}
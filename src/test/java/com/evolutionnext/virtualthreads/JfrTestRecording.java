@@ -0,0 +1,28 @@
+package com.evolutionnext.virtualthreads;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * The JFR recording every virtual thread test starts with: the "profile" configuration
+ * plus virtual thread lifecycle, execution samples and allocation events.
+ */
+final class JfrTestRecording {
+    private JfrTestRecording() {
+    }
+
+    static Recording create(String name) throws IOException, ParseException {
+        Configuration profile = Configuration.getConfiguration("profile");
+        Recording recording = new Recording(profile);
+        recording.enable("jdk.VirtualThreadStart");
+        recording.enable("jdk.VirtualThreadEnd");
+        recording.enable("jdk.ExecutionSample");
+        recording.enable("jdk.ObjectAllocationInNewTLAB");
+        recording.enable("jdk.ObjectAllocationOutsideTLAB");
+        recording.setName(name);
+        return recording;
+    }
+}
@@ -0,0 +1,102 @@
+package com.evolutionnext.virtualthreads;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a workload under the recording of {@link JfrTestRecording} with
+ * {@code jdk.VirtualThreadPinned} and {@code jdk.VirtualThreadSubmitFailed} enabled,
+ * prints every pinning with its duration and stack, and checks the result against a budget.
+ * Pinning is reported from {@code threshold} on, the JDK default is 20 ms.
+ */
+final class PinningHarness {
+
+    @FunctionalInterface
+    interface Workload {
+        void run() throws Exception;
+    }
+
+    record Pinning(Duration duration, String thread, String stackTrace) {
+    }
+
+    record Budget(int maxPinnings, Duration maxTotalPinned, long maxSubmitFailures) {
+        static final Budget NONE = new Budget(0, Duration.ZERO, 0);
+    }
+
+    record Report(String workload, List<Pinning> pinnings, long submitFailures) {
+        Duration totalPinned() {
+            return pinnings.stream().map(Pinning::duration).reduce(Duration.ZERO, Duration::plus);
+        }
+
+        void assertWithin(Budget budget) {
+            if (pinnings.size() > budget.maxPinnings()
+                || totalPinned().compareTo(budget.maxTotalPinned()) > 0
+                || submitFailures > budget.maxSubmitFailures()) {
+                throw new AssertionError(String.format(
+                    "%s exceeded its pinning budget %s: %d pinnings for %s in total, %d submit failures%n%s",
+                    workload, budget, pinnings.size(), totalPinned(), submitFailures,
+                    pinnings.stream().map(Pinning::stackTrace).collect(Collectors.joining(System.lineSeparator()))));
+            }
+        }
+    }
+
+    private PinningHarness() {
+    }
+
+    static Report run(String name, Duration threshold, Workload workload) throws Exception {
+        Path path = Files.createTempFile(name, ".jfr");
+        try (Recording recording = JfrTestRecording.create(name)) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+            recording.enable("jdk.VirtualThreadSubmitFailed").withStackTrace();
+            recording.start();
+            workload.run();
+            recording.stop();
+            recording.dump(path);
+        }
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+            List<Pinning> pinnings = events.stream()
+                .filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                .map(event -> new Pinning(event.getDuration(),
+                    event.getThread() == null ? "unknown" : event.getThread().getJavaName(),
+                    format(event.getStackTrace())))
+                .toList();
+            long submitFailures = events.stream()
+                .filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadSubmitFailed"))
+                .count();
+            Report report = new Report(name, pinnings, submitFailures);
+            print(report);
+            return report;
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static void print(Report report) {
+        System.out.printf("[%s] %d pinnings, %s pinned in total, %d submit failures%n",
+            report.workload(), report.pinnings().size(), report.totalPinned(), report.submitFailures());
+        report.pinnings().forEach(pinning ->
+            System.out.printf("  pinned %s on %s%n%s%n", pinning.duration(), pinning.thread(), pinning.stackTrace()));
+    }
+
+    private static String format(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return "    <no stack trace>";
+        return stackTrace.getFrames().stream()
+            .map(PinningHarness::format)
+            .collect(Collectors.joining(System.lineSeparator()));
+    }
+
+    private static String format(RecordedFrame frame) {
+        return String.format("    at %s.%s(line %d)",
+            frame.getMethod().getType().getName(), frame.getMethod().getName(), frame.getLineNumber());
+    }
+}
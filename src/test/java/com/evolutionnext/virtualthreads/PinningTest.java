@@ -0,0 +1,79 @@
+package com.evolutionnext.virtualthreads;
+
+import com.evolutionnext.structuredconcurrency.AccountingService;
+import com.evolutionnext.structuredconcurrency.InvoiceService;
+import com.evolutionnext.structuredconcurrency.UserService;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Regression gate: the workshop's workloads must not pin their carriers. The budget can
+ * be loosened per run with {@code -Dpinning.maxPinnings} and {@code -Dpinning.maxTotalMillis}.
+ */
+public class PinningTest {
+
+    private static final Duration THRESHOLD = Duration.ofMillis(1);
+    private static final PinningHarness.Budget BUDGET = new PinningHarness.Budget(
+        Integer.getInteger("pinning.maxPinnings", 0),
+        Duration.ofMillis(Long.getLong("pinning.maxTotalMillis", 0)),
+        0);
+
+    @Test
+    void testGoAheadAndBlockDoesNotPin() throws Exception {
+        PinningHarness.run("GoAheadAndBlock", THRESHOLD, () ->
+            GoAheadAndBlockVirtualThread.goAheadAndBlock(80, Duration.ofMillis(100))
+        ).assertWithin(BUDGET);
+    }
+
+    @Test
+    void testWeatherStationDoesNotPin() throws Exception {
+        PinningHarness.run("WeatherStation", THRESHOLD, () -> {
+            Thread thread = Thread.ofVirtual().start(() ->
+                WeatherStation.getTemperature(WeatherStation.getCity()));
+            thread.join();
+        }).assertWithin(BUDGET);
+    }
+
+    @Test
+    void testAccountingServiceDoesNotPin() throws Exception {
+        AccountingService accountingService = new AccountingService(new UserService(), new InvoiceService());
+        PinningHarness.run("AccountingService", THRESHOLD, () -> {
+            accountingService.findAllInvoicesByUser(1L);
+            accountingService.findAllUsers(1L, 2L, 3L);
+        }).assertWithin(BUDGET);
+    }
+
+    /**
+     * Blocking inside a class initializer pins the carrier on every JDK, so the detector
+     * must see it and the gate must fail.
+     */
+    @Test
+    void testPinningIsDetected() throws Exception {
+        PinningHarness.Report report = PinningHarness.run("SlowClassInitializer", THRESHOLD, () -> {
+            Thread thread = Thread.ofVirtual().start(SlowClassInitializer::touch);
+            thread.join();
+        });
+        assertThat(report.pinnings()).isNotEmpty();
+        assertThat(report.pinnings().getFirst().stackTrace()).contains("SlowClassInitializer");
+        assertThatThrownBy(() -> report.assertWithin(PinningHarness.Budget.NONE))
+            .isInstanceOf(AssertionError.class)
+            .hasMessageContaining("exceeded its pinning budget");
+    }
+
+    static class SlowClassInitializer {
+        static {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        static void touch() {
+        }
+    }
+}
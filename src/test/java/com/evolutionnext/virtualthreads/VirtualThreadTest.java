@@ -1,7 +1,6 @@
 package com.evolutionnext.virtualthreads;
 
 import com.sun.management.HotSpotDiagnosticMXBean;
-import jdk.jfr.Configuration;
 import jdk.jfr.Recording;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -27,14 +26,7 @@ public class VirtualThreadTest {
         testName = testInfo.getTestClass().map(Class::getSimpleName).orElse("UnknownClass")
                    + "_" +
                    testInfo.getTestMethod().map(Method::getName).orElse("UnknownMethod");
-        Configuration profile = Configuration.getConfiguration("profile");
-        recording = new Recording(profile);
-        recording.enable("jdk.VirtualThreadStart");
-        recording.enable("jdk.VirtualThreadEnd");
-        recording.enable("jdk.ExecutionSample");
-        recording.enable("jdk.ObjectAllocationInNewTLAB");
-        recording.enable("jdk.ObjectAllocationOutsideTLAB");
-        recording.setName(testName);
+        recording = JfrTestRecording.create(testName);
         recording.start();
     }
 